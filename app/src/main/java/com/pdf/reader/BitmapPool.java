@@ -0,0 +1,92 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按分配字节数分桶的 ARGB_8888 位图池。
+ * 取用时从不小于所需大小的桶中拿一张，用 Bitmap.reconfigure 改成目标尺寸复用，
+ * 避免每次翻页都分配几张整页大小的位图。线程安全：渲染线程取、主线程还。
+ */
+public class BitmapPool {
+
+    // 复用的位图最多比需求大这么多倍，避免小页面长期占着大块内存
+    private static final int MAX_OVERSIZE = 2;
+
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private final int maxBytes;
+    private int currentBytes = 0;
+
+    public BitmapPool(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** 取一张指定尺寸、内容已清空的可变位图 */
+    public Bitmap get(int width, int height) {
+        int needed = width * height * 4;
+        synchronized (this) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> entry = buckets.ceilingEntry(needed);
+            while (entry != null && entry.getKey() <= needed * MAX_OVERSIZE) {
+                Bitmap bmp = entry.getValue().pollFirst();
+                if (entry.getValue().isEmpty()) buckets.remove(entry.getKey());
+                if (bmp == null) break;
+                currentBytes -= entry.getKey();
+                if (bmp.isRecycled()) {
+                    entry = buckets.ceilingEntry(needed);
+                    continue;
+                }
+                try {
+                    bmp.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                    bmp.eraseColor(Color.TRANSPARENT);
+                    return bmp;
+                } catch (IllegalArgumentException e) {
+                    bmp.recycle();
+                    entry = buckets.ceilingEntry(needed);
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /** 归还位图；调用方此后不得再使用它 */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes / 2) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            ArrayDeque<Bitmap> bucket = buckets.get(size);
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                buckets.put(size, bucket);
+            }
+            if (bucket.contains(bitmap)) return;
+            bucket.addLast(bitmap);
+            currentBytes += size;
+            trimTo(maxBytes);
+        }
+    }
+
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    // 从最大的桶开始回收，直到总量不超过 limit
+    private void trimTo(int limit) {
+        while (currentBytes > limit && !buckets.isEmpty()) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> last = buckets.lastEntry();
+            Bitmap bmp = last.getValue().pollFirst();
+            if (last.getValue().isEmpty()) buckets.remove(last.getKey());
+            if (bmp != null) {
+                currentBytes -= last.getKey();
+                bmp.recycle();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 渲染结果的磁盘缓存，位于 getCacheDir()/pages，跨会话保留。
+ * 文件名是 文档标识（路径或 URI + 大小 + 修改时间）+ 页面缓存键 的摘要，PDF 被替换后旧条目自然失效。
+ * 读取在渲染线程上同步进行（先于 PdfRenderer）；写入在独立 IO 线程上压缩，按最近使用时间淘汰。
+ */
+public class DiskPageCache {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String DIR_NAME = "pages";
+    private static final String SUFFIX = ".webp";
+    private static final int QUALITY = 90;
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private final File dir;
+    private final long maxBytes;
+    private final BitmapPool bitmapPool;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> new Thread(r, "DiskPageCache"));
+    // 只在 IO 线程上访问，-1 表示尚未统计
+    private long currentBytes = -1;
+
+    /** bitmapPool 用来回收写完的副本，可为 null */
+    public DiskPageCache(Context context, long maxBytes, BitmapPool bitmapPool) {
+        this.dir = new File(context.getCacheDir(), DIR_NAME);
+        this.maxBytes = maxBytes;
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * 命中时返回可变位图并刷新其最近使用时间；未命中或文件损坏返回 null。
+     * 有位图池时先读出尺寸，直接解码进池里的位图，磁盘命中翻页不再每次新分配整页位图
+     */
+    public Bitmap read(PageBitmapCache.Key key) {
+        File file = fileFor(key);
+        if (file == null || !file.exists()) return null;
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inMutable = true;
+        opts.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = null;
+        if (bitmapPool != null) {
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getPath(), opts);
+            opts.inJustDecodeBounds = false;
+            if (opts.outWidth > 0 && opts.outHeight > 0) {
+                opts.inBitmap = bitmapPool.get(opts.outWidth, opts.outHeight);
+                try {
+                    bitmap = BitmapFactory.decodeFile(file.getPath(), opts);
+                } catch (IllegalArgumentException e) {
+                    // 复用位图不合用时退回普通解码
+                    bitmap = null;
+                }
+                if (bitmap == null) bitmapPool.put(opts.inBitmap);
+                opts.inBitmap = null;
+            }
+        }
+        if (bitmap == null) bitmap = BitmapFactory.decodeFile(file.getPath(), opts);
+        if (bitmap == null) {
+            file.delete();
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    /**
+     * 异步写入。snapshot 归本类所有，写完即还给位图池，
+     * 调用方应传入一份副本（最好也从位图池取），避免原位图被复用时仍在压缩。
+     */
+    public void writeAsync(PageBitmapCache.Key key, Bitmap snapshot) {
+        io.execute(() -> {
+            try {
+                File file = fileFor(key);
+                if (file == null || file.exists()) return;
+                if (!dir.exists() && !dir.mkdirs()) return;
+                File tmp = new File(dir, file.getName() + ".tmp");
+                try (OutputStream out = new FileOutputStream(tmp)) {
+                    if (!snapshot.compress(Bitmap.CompressFormat.WEBP, QUALITY, out)) {
+                        tmp.delete();
+                        return;
+                    }
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    return;
+                }
+                if (currentBytes < 0) currentBytes = scanSize();
+                else currentBytes += file.length();
+                if (currentBytes > maxBytes) trim();
+            } catch (IOException e) {
+                Log.e(TAG, "写入页面磁盘缓存失败", e);
+            } finally {
+                if (bitmapPool != null) bitmapPool.put(snapshot);
+                else snapshot.recycle();
+            }
+        });
+    }
+
+    public boolean contains(PageBitmapCache.Key key) {
+        File file = fileFor(key);
+        return file != null && file.exists();
+    }
+
+    public void clear() {
+        io.execute(() -> {
+            File[] files = dir.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            currentBytes = 0;
+        });
+    }
+
+    // 按最近使用时间从旧到新删除，直到降到预算的 90%
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long target = maxBytes * 9 / 10;
+        for (File f : files) {
+            if (currentBytes <= target) break;
+            long len = f.length();
+            if (f.delete()) currentBytes -= len;
+        }
+    }
+
+    private long scanSize() {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) total += f.length();
+        return total;
+    }
+
+    private File fileFor(PageBitmapCache.Key key) {
+        if (key == null || key.file == null) return null;
+        // key.file 是 DocumentSource.cacheId()：内容指纹，或带文件大小和修改时间的 id
+        return new File(dir, digest(key.file + "|" + key) + SUFFIX);
+    }
+
+    static String digest(String s) {
+        try {
+            return UriImportCache.hex(MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(s.hashCode());
+        }
+    }
+}
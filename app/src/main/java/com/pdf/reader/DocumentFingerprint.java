@@ -0,0 +1,110 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+/**
+ * 文档内容指纹：文件大小 + 开头、结尾和中间若干段抽样字节的摘要，抽样段用内存映射读取，
+ * 几百 MB 的书也只读几百 KB。同一内容不论放在哪个路径、从哪个 URI 打开，指纹都相同，
+ * 阅读进度、渲染缓存和文档元数据都以它为键。
+ * 结果按 位置 + 大小 + 修改时间 记在 document_fingerprints 里，文件没变就不再重算。
+ */
+public class DocumentFingerprint {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String PREFS_NAME = "document_fingerprints";
+    private static final String PREFIX = "fp1:";
+    private static final int EDGE_BYTES = 64 * 1024;
+    private static final int SAMPLE_BYTES = 16 * 1024;
+    private static final int SAMPLES = 8;
+    // 记忆条数超过上限时整个清空重来，重算只是多读几百 KB
+    private static final int MAX_MEMO = 1000;
+
+    /** 在主线程回调 */
+    public interface Callback {
+        void onFingerprint(DocumentSource source, String fingerprint);
+    }
+
+    private final SharedPreferences memo;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public DocumentFingerprint(Context context) {
+        memo = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** 已记住的指纹；没算过、或提供方不给修改时间无法判断是否变化时返回 null */
+    public String peek(DocumentSource source) {
+        if (!memoizable(source)) return null;
+        return memo.getString(source.versionId(), null);
+    }
+
+    /** 在后台计算并记住指纹；失败时不回调 */
+    public void computeAsync(DocumentSource source, Callback callback) {
+        new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                String fingerprint = compute(source);
+                if (memoizable(source)) {
+                    SharedPreferences.Editor editor = memo.edit();
+                    if (memo.getAll().size() >= MAX_MEMO) editor.clear();
+                    editor.putString(source.versionId(), fingerprint).apply();
+                }
+                mainHandler.post(() -> callback.onFingerprint(source, fingerprint));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "计算文档指纹失败: " + source.id, e);
+            }
+        }, "DocumentFingerprint").start();
+    }
+
+    private static boolean memoizable(DocumentSource source) {
+        return source.size() > 0 && source.mtime() > 0;
+    }
+
+    /** 在后台线程调用 */
+    static String compute(DocumentSource source) throws IOException {
+        try (ParcelFileDescriptor fd = source.open();
+             FileInputStream in = new FileInputStream(fd.getFileDescriptor());
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size <= 0) throw new IOException("无法取得文件大小");
+            MessageDigest md = UriImportCache.sha1();
+            if (size <= 2L * EDGE_BYTES + (long) SAMPLES * SAMPLE_BYTES) {
+                sample(channel, md, 0, (int) size);
+            } else {
+                sample(channel, md, 0, EDGE_BYTES);
+                for (int i = 1; i <= SAMPLES; i++) {
+                    sample(channel, md, size * i / (SAMPLES + 1), SAMPLE_BYTES);
+                }
+                sample(channel, md, size - EDGE_BYTES, EDGE_BYTES);
+            }
+            return PREFIX + size + ":" + UriImportCache.hex(md.digest());
+        }
+    }
+
+    // 优先内存映射；个别提供方的描述符不支持映射时改用定位读取
+    private static void sample(FileChannel channel, MessageDigest md, long position, int length) throws IOException {
+        try {
+            md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            return;
+        } catch (IOException | UnsupportedOperationException e) {
+            // 落到下面的定位读取
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        buffer.flip();
+        md.update(buffer);
+    }
+}
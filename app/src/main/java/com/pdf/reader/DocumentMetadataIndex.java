@@ -0,0 +1,270 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按文档保存的元数据：页数、每页原始尺寸、空白页 / 扫描页标记，连同文档指纹一起存在 getCacheDir()/meta/。
+ * 第一次打开时在后台线程用独立的 PdfRenderer 建立：先量尺寸马上交出，再逐页按接近原始分辨率渲染一遍打标记；
+ * 之后排版直接查表，不必为量尺寸打开页面，再次打开同一本书时在后台读盘即得，不用等渲染线程。
+ */
+public class DocumentMetadataIndex {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String DIR_NAME = "meta";
+    private static final int VERSION = 2;
+    private static final int MAX_DOCUMENTS = 100;
+    // 页面标记：按长边不超过 PROBE_MAX 渲染（常见开本约为 1pt 一像素），不做缩小平均，孤零零的页码、淡铅笔字也数得到
+    private static final int PROBE_MAX = 1024;
+    // 亮度低于 INK_LUMA 的像素算墨迹，不超过 BLANK_MAX_INK 个算空白页
+    private static final int INK_LUMA = 232;
+    private static final int BLANK_MAX_INK = 4;
+    // 亮度低于 PAPER_LUMA（不是纯白纸面）的像素超过这个比例，算整页图像的扫描页
+    private static final int PAPER_LUMA = 250;
+    private static final float SCAN_MIN_TONED = 0.35f;
+
+    public static final int FLAG_BLANK = 1;
+    public static final int FLAG_SCAN = 2;
+
+    /** 在主线程回调；load 没有可用的元数据时回调 null */
+    public interface Listener {
+        void onMetadata(Metadata metadata);
+    }
+
+    public static final class Metadata {
+        public final String fingerprint;
+        public final int pageCount;
+        public final int[] widths;
+        public final int[] heights;
+        // 每页 FLAG_BLANK / FLAG_SCAN 的组合；尚未检测时为 null
+        private final byte[] flags;
+
+        Metadata(String fingerprint, int[] widths, int[] heights, byte[] flags) {
+            this.fingerprint = fingerprint;
+            this.pageCount = widths.length;
+            this.widths = widths;
+            this.heights = heights;
+            this.flags = flags;
+        }
+
+        public boolean flagsChecked() {
+            return flags != null;
+        }
+
+        public boolean isBlank(int page) {
+            return hasFlag(page, FLAG_BLANK);
+        }
+
+        public boolean isScan(int page) {
+            return hasFlag(page, FLAG_SCAN);
+        }
+
+        private boolean hasFlag(int page, int flag) {
+            return flags != null && page >= 0 && page < flags.length && (flags[page] & flag) != 0;
+        }
+    }
+
+    private final File dir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public DocumentMetadataIndex(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    /** 在后台读取已保存的元数据，没有或指纹不符时回调 null；之后的 build 或 cancel 使它不再回调 */
+    public void load(String fingerprint, Listener listener) {
+        int gen = generation.incrementAndGet();
+        new Thread(() -> {
+            Metadata metadata = read(fingerprint);
+            mainHandler.post(() -> {
+                if (gen == generation.get()) listener.onMetadata(metadata);
+            });
+        }, "DocumentMetadata").start();
+    }
+
+    private Metadata read(String fingerprint) {
+        File file = fileFor(fingerprint);
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[(int) file.length()];
+            int n = 0;
+            while (n < buf.length) {
+                int r = in.read(buf, n, buf.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+            JSONObject root = new JSONObject(new String(buf, 0, n, StandardCharsets.UTF_8));
+            if (root.optInt("version") != VERSION || !fingerprint.equals(root.optString("id"))) return null;
+            JSONArray w = root.getJSONArray("w"), h = root.getJSONArray("h");
+            JSONArray f = root.optJSONArray("f");
+            int count = w.length();
+            if (h.length() != count || (f != null && f.length() != count)) return null;
+            int[] widths = new int[count], heights = new int[count];
+            byte[] flags = f != null ? new byte[count] : null;
+            for (int i = 0; i < count; i++) {
+                widths[i] = w.getInt(i);
+                heights[i] = h.getInt(i);
+                if (flags != null) flags[i] = (byte) f.getInt(i);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return new Metadata(fingerprint, widths, heights, flags);
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "读取文档元数据失败", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /** 在后台建立元数据；再次调用 build 或 cancel 会让进行中的建立停下，不再回调 */
+    public void build(DocumentSource source, String fingerprint, Listener listener) {
+        int gen = generation.incrementAndGet();
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try (ParcelFileDescriptor fd = source.open();
+                 PdfRenderer renderer = new PdfRenderer(fd)) {
+                int count = renderer.getPageCount();
+                int[] widths = new int[count], heights = new int[count];
+                for (int i = 0; i < count; i++) {
+                    if (gen != generation.get()) return;
+                    PdfRenderer.Page page = renderer.openPage(i);
+                    try {
+                        widths[i] = page.getWidth();
+                        heights[i] = page.getHeight();
+                    } finally {
+                        page.close();
+                    }
+                }
+                publish(gen, new Metadata(fingerprint, widths, heights, null), listener);
+
+                byte[] flags = new byte[count];
+                Bitmap probe = Bitmap.createBitmap(PROBE_MAX, PROBE_MAX, Bitmap.Config.ARGB_8888);
+                int[] row = new int[PROBE_MAX];
+                try {
+                    for (int i = 0; i < count; i++) {
+                        if (gen != generation.get()) return;
+                        flags[i] = classify(renderer, i, widths[i], heights[i], probe, row);
+                    }
+                } finally {
+                    probe.recycle();
+                }
+                publish(gen, new Metadata(fingerprint, widths, heights, flags), listener);
+            } catch (Exception e) {
+                Log.e(TAG, "建立文档元数据失败", e);
+            }
+        }, "DocumentMetadata");
+        thread.start();
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** 同一份元数据改存到新的键下（如文档指纹算出之后），在后台写盘；返回新键下的副本 */
+    public Metadata rekey(Metadata metadata, String fingerprint) {
+        Metadata copy = new Metadata(fingerprint, metadata.widths, metadata.heights, metadata.flags);
+        new Thread(() -> save(copy), "DocumentMetadata").start();
+        return copy;
+    }
+
+    private void publish(int gen, Metadata metadata, Listener listener) {
+        if (gen != generation.get()) return;
+        save(metadata);
+        mainHandler.post(() -> {
+            if (gen == generation.get()) listener.onMetadata(metadata);
+        });
+    }
+
+    // 按比例渲染到探测位图左上角（白底），逐行数墨迹像素和非纯白像素
+    private static byte classify(PdfRenderer renderer, int index, int pw, int ph, Bitmap probe, int[] row) {
+        if (pw <= 0 || ph <= 0) return 0;
+        float scale = Math.min(1f, (float) PROBE_MAX / Math.max(pw, ph));
+        int w = Math.max(1, Math.min(PROBE_MAX, Math.round(pw * scale)));
+        int h = Math.max(1, Math.min(PROBE_MAX, Math.round(ph * scale)));
+        probe.eraseColor(Color.WHITE);
+        Matrix m = new Matrix();
+        m.setScale((float) w / pw, (float) h / ph);
+        PdfRenderer.Page page = renderer.openPage(index);
+        try {
+            page.render(probe, new Rect(0, 0, w, h), m, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        } finally {
+            page.close();
+        }
+        long ink = 0, toned = 0;
+        for (int y = 0; y < h; y++) {
+            probe.getPixels(row, 0, w, 0, y, w, 1);
+            for (int x = 0; x < w; x++) {
+                int luma = PageImageFormat.luma(row[x]);
+                if (luma < PAPER_LUMA) {
+                    toned++;
+                    if (luma < INK_LUMA) ink++;
+                }
+            }
+        }
+        int flags = 0;
+        if (ink <= BLANK_MAX_INK) flags |= FLAG_BLANK;
+        if (toned > (long) w * h * SCAN_MIN_TONED) flags |= FLAG_SCAN;
+        return (byte) flags;
+    }
+
+    private File fileFor(String fingerprint) {
+        return new File(dir, DiskPageCache.digest(fingerprint) + ".json");
+    }
+
+    private void save(Metadata metadata) {
+        if (!dir.exists() && !dir.mkdirs()) return;
+        try {
+            JSONArray w = new JSONArray(), h = new JSONArray(), f = new JSONArray();
+            for (int i = 0; i < metadata.pageCount; i++) {
+                w.put(metadata.widths[i]);
+                h.put(metadata.heights[i]);
+                if (metadata.flags != null) f.put(metadata.flags[i]);
+            }
+            JSONObject root = new JSONObject().put("version", VERSION).put("id", metadata.fingerprint)
+                    .put("w", w).put("h", h);
+            if (metadata.flags != null) root.put("f", f);
+            File file = fileFor(metadata.fingerprint);
+            File tmp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!tmp.renameTo(file)) tmp.delete();
+            prune(file);
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "保存文档元数据失败", e);
+        }
+    }
+
+    // 只保留最近打开过的若干本书
+    private void prune(File keep) {
+        File[] files = dir.listFiles((d, n) -> n.endsWith(".json"));
+        if (files == null || files.length <= MAX_DOCUMENTS) return;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_DOCUMENTS; i < files.length; i++) {
+            if (!files[i].equals(keep)) files[i].delete();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.pdf.reader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * 一份可打开的 PDF：本地文件路径或 content:// URI。
+ * id 用于最近打开等记录；versionId 另带大小和修改时间；cacheId 在已知内容指纹时就是指纹，
+ * 文件移动、改名后各级缓存照样命中，内容变化后自然失效。
+ * 自身就是 DescriptorOpener，可以直接交给渲染引擎在工作线程上打开。
+ */
+public class DocumentSource implements PageRenderEngine.DescriptorOpener {
+
+    private static final String CONTENT_PREFIX = "content://";
+
+    public final String id;
+    public final String displayName;
+    private final File file;
+    private final Uri uri;
+    private final ContentResolver resolver;
+    private final long size;
+    private final long mtime;
+    // 内容指纹，见 DocumentFingerprint；未知时为 null
+    public final String fingerprint;
+
+    private DocumentSource(String id, String displayName, File file, Uri uri, ContentResolver resolver,
+                           long size, long mtime, String fingerprint) {
+        this.id = id;
+        this.displayName = displayName;
+        this.file = file;
+        this.uri = uri;
+        this.resolver = resolver;
+        this.size = size;
+        this.mtime = mtime;
+        this.fingerprint = fingerprint;
+    }
+
+    public static boolean isUri(String id) {
+        return id != null && id.startsWith(CONTENT_PREFIX);
+    }
+
+    /** 按记录下来的 id 还原 */
+    public static DocumentSource of(Context context, String id) {
+        if (isUri(id)) return forUri(context.getContentResolver(), Uri.parse(id));
+        return forFile(new File(id));
+    }
+
+    public static DocumentSource forFile(File file) {
+        return new DocumentSource(file.getAbsolutePath(), file.getName(), file, null, null,
+                file.length(), file.lastModified(), null);
+    }
+
+    /** 查询 URI 的显示名、大小和修改时间（提供方不给的字段记为空 / 0） */
+    public static DocumentSource forUri(ContentResolver resolver, Uri uri) {
+        String name = null;
+        long size = 0, mtime = 0;
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                if (nameIndex != -1) name = cursor.getString(nameIndex);
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (sizeIndex != -1 && !cursor.isNull(sizeIndex)) size = cursor.getLong(sizeIndex);
+                int mtimeIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                if (mtimeIndex != -1 && !cursor.isNull(mtimeIndex)) mtime = cursor.getLong(mtimeIndex);
+            }
+        } catch (Exception e) {
+            // 部分提供方不支持查询，按未知处理
+        }
+        if (name == null) name = uri.getLastPathSegment();
+        return new DocumentSource(uri.toString(), name != null ? name : "PDF", null, uri, resolver, size, mtime, null);
+    }
+
+    public boolean isUri() {
+        return uri != null;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long mtime() {
+        return mtime;
+    }
+
+    public DocumentSource withFingerprint(String fingerprint) {
+        return new DocumentSource(id, displayName, file, uri, resolver, size, mtime, fingerprint);
+    }
+
+    /** 位置 + 大小 + 修改时间，用来记忆指纹 */
+    public String versionId() {
+        return id + "@" + size + ":" + mtime;
+    }
+
+    public String cacheId() {
+        return fingerprint != null ? fingerprint : versionId();
+    }
+
+    /** 阅读进度的键：有指纹用指纹，否则退回 id */
+    public String progressKey() {
+        return fingerprint != null ? fingerprint : id;
+    }
+
+    @Override
+    public ParcelFileDescriptor open() throws IOException {
+        if (file != null) return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        ParcelFileDescriptor fd = resolver.openFileDescriptor(uri, "r");
+        if (fd == null) throw new FileNotFoundException(id);
+        return fd;
+    }
+
+    /**
+     * 主线程上的快速检查，只看本地文件。
+     * content:// URI 要真正打开描述符才知道，提供方可能很慢，留给渲染线程 open() 时报告失败
+     */
+    public boolean canOpen() {
+        return file == null || (file.exists() && file.canRead());
+    }
+
+    /** PdfRenderer 需要可定位的描述符；管道、套接字之类的流式描述符只能先复制。会打开描述符，不要在主线程调用 */
+    public boolean isSeekable() {
+        if (file != null) return true;
+        try (ParcelFileDescriptor fd = resolver.openFileDescriptor(uri, "r")) {
+            if (fd == null || fd.getStatSize() < 0) return false;
+            Os.lseek(fd.getFileDescriptor(), 0, OsConstants.SEEK_CUR);
+            return true;
+        } catch (IOException | ErrnoException | RuntimeException e) {
+            return false;
+        }
+    }
+}
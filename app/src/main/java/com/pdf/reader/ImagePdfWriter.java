@@ -0,0 +1,239 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 只含整页图片的 PDF 写出器：每加一页就把图片流、内容流和页面对象立即写到输出流，
+ * 只在内存里记各对象的偏移，不论多少页，内存里最多只有调用方手上那一页。
+ * 页面尺寸按 1 像素 = 1 点，与原先 PdfDocument 导出的一致。
+ * 每页先抽样看内容再定编码：黑白文字页存 1 位、灰度页存 8 位灰度（都用 Flate），彩色页存 JPEG，
+ * 比整页 RGB 小得多，写出和之后打开都快。
+ */
+public class ImagePdfWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+
+    // 图片流编码方式
+    static final int ENCODING_BILEVEL = 0;
+    static final int ENCODING_GRAY = 1;
+    static final int ENCODING_JPEG = 2;
+    // 彩色但有透明像素：JPEG 不认透明度，按白底压成无损 RGB
+    static final int ENCODING_RGB = 3;
+    private static final String[] IMAGE_FORMATS = {
+            "/ColorSpace /DeviceGray /BitsPerComponent 1 /Filter /FlateDecode",
+            "/ColorSpace /DeviceGray /BitsPerComponent 8 /Filter /FlateDecode",
+            "/ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode",
+            "/ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /FlateDecode",
+    };
+    private static final int JPEG_QUALITY = 85;
+    // 内容判断的抽样网格、阈值
+    private static final int SAMPLE_GRID = 256;
+    private static final int COLOR_CHANNEL_DIFF = 24;
+    private static final float MAX_COLORED = 0.01f;
+    private static final int MIDTONE_LOW = 64;
+    private static final int MIDTONE_HIGH = 192;
+    private static final float MAX_MIDTONE = 0.02f;
+    private static final int BILEVEL_THRESHOLD = 128;
+
+    private final CountingOutputStream out;
+    // offsets.get(n - 1) 是对象 n 的起始偏移
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> pageObjects = new ArrayList<>();
+    private boolean closed = false;
+
+    public ImagePdfWriter(OutputStream out) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        // 目录和页面树最后才写，先占好编号
+        offsets.add(0L);
+        offsets.add(0L);
+        write("%PDF-1.4\n%âãÏÓ\n");
+    }
+
+    public int pageCount() {
+        return pageObjects.size();
+    }
+
+    /** 写入一页；返回后调用方即可回收 bitmap */
+    public void addPage(Bitmap bitmap) throws IOException {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        int image = writeImage(bitmap);
+
+        byte[] content = String.format(Locale.US, "q %d 0 0 %d 0 0 cm /Im0 Do Q\n", w, h)
+                .getBytes(StandardCharsets.US_ASCII);
+        int contents = beginObject();
+        write("<< /Length " + content.length + " >>\nstream\n");
+        out.write(content);
+        write("endstream\nendobj\n");
+
+        int page = beginObject();
+        write(String.format(Locale.US,
+                "<< /Type /Page /Parent %d 0 R /MediaBox [0 0 %d %d] /Resources << /XObject << /Im0 %d 0 R >> >> /Contents %d 0 R >>\nendobj\n",
+                PAGES, w, h, image, contents));
+        pageObjects.add(page);
+    }
+
+    // 图片流长度写完才知道，用间接对象补在后面
+    private int writeImage(Bitmap bitmap) throws IOException {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        int encoding = chooseEncoding(bitmap);
+        int image = beginObject();
+        int length = image + 1;
+        offsets.add(0L);
+        write(String.format(Locale.US,
+                "<< /Type /XObject /Subtype /Image /Width %d /Height %d %s /Length %d 0 R >>\nstream\n",
+                w, h, IMAGE_FORMATS[encoding], length));
+        long start = out.count;
+        if (encoding == ENCODING_JPEG) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) throw new IOException("JPEG 编码失败");
+        } else {
+            writeFlate(bitmap, encoding);
+        }
+        long streamLength = out.count - start;
+        write("\nendstream\nendobj\n");
+        offsets.set(length - 1, out.count);
+        write(length + " 0 obj\n" + streamLength + "\nendobj\n");
+        return image;
+    }
+
+    private void writeFlate(Bitmap bitmap, int encoding) throws IOException {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            DeflaterOutputStream z = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            int[] pixels = new int[w];
+            byte[] row = new byte[encoding == ENCODING_BILEVEL ? (w + 7) / 8 : encoding == ENCODING_GRAY ? w : w * 3];
+            for (int y = 0; y < h; y++) {
+                bitmap.getPixels(pixels, 0, w, 0, y, w, 1);
+                if (encoding == ENCODING_BILEVEL) {
+                    // 1 位灰度里 1 是白，每行按字节补齐
+                    Arrays.fill(row, (byte) 0);
+                    for (int x = 0; x < w; x++) {
+                        if (PageImageFormat.luma(opaque(pixels[x])) >= BILEVEL_THRESHOLD) row[x >> 3] |= 0x80 >>> (x & 7);
+                    }
+                } else if (encoding == ENCODING_GRAY) {
+                    for (int x = 0; x < w; x++) row[x] = (byte) PageImageFormat.luma(opaque(pixels[x]));
+                } else {
+                    for (int x = 0, p = 0; x < w; x++, p += 3) {
+                        int c = opaque(pixels[x]);
+                        row[p] = (byte) (c >> 16);
+                        row[p + 1] = (byte) (c >> 8);
+                        row[p + 2] = (byte) c;
+                    }
+                }
+                z.write(row);
+            }
+            z.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 抽样判断这一页怎么存：有彩色就存 JPEG；单色页里中间调极少（白纸黑字）存 1 位，否则存 8 位灰度。
+     * 按行取像素，抽样网格最多 256 × 256
+     */
+    static int chooseEncoding(Bitmap bitmap) {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        int stepX = Math.max(1, w / SAMPLE_GRID), stepY = Math.max(1, h / SAMPLE_GRID);
+        int[] pixels = new int[w];
+        int total = 0, colored = 0, midtone = 0;
+        boolean translucent = false;
+        for (int y = 0; y < h; y += stepY) {
+            bitmap.getPixels(pixels, 0, w, 0, y, w, 1);
+            for (int x = 0; x < w; x += stepX) {
+                int raw = pixels[x];
+                if (raw >>> 24 != 0xFF) translucent = true;
+                int c = opaque(raw);
+                int r = (c >> 16) & 0xFF, g = (c >> 8) & 0xFF, b = c & 0xFF;
+                if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) > COLOR_CHANNEL_DIFF) colored++;
+                int l = PageImageFormat.luma(c);
+                if (l >= MIDTONE_LOW && l < MIDTONE_HIGH) midtone++;
+                total++;
+            }
+        }
+        if (colored > total * MAX_COLORED) return translucent ? ENCODING_RGB : ENCODING_JPEG;
+        return midtone <= total * MAX_MIDTONE ? ENCODING_BILEVEL : ENCODING_GRAY;
+    }
+
+    // 透明处按白纸算，与画在 PdfDocument 页面上的效果一致
+    private static int opaque(int c) {
+        int a = c >>> 24;
+        if (a == 0xFF) return c;
+        int r = ((c >> 16) & 0xFF) * a / 255 + 255 - a;
+        int g = ((c >> 8) & 0xFF) * a / 255 + 255 - a;
+        int b = (c & 0xFF) * a / 255 + 255 - a;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /** 写出页面树、目录和交叉引用表，并关闭输出流 */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            offsets.set(PAGES - 1, out.count);
+            StringBuilder kids = new StringBuilder();
+            for (int page : pageObjects) kids.append(page).append(" 0 R ");
+            write(PAGES + " 0 obj\n<< /Type /Pages /Kids [" + kids + "] /Count " + pageObjects.size() + " >>\nendobj\n");
+            offsets.set(CATALOG - 1, out.count);
+            write(CATALOG + " 0 obj\n<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+            long xref = out.count;
+            StringBuilder sb = new StringBuilder();
+            sb.append("xref\n0 ").append(offsets.size() + 1).append('\n');
+            sb.append("0000000000 65535 f \n");
+            for (long offset : offsets) sb.append(String.format(Locale.US, "%010d 00000 n \n", offset));
+            sb.append("trailer\n<< /Size ").append(offsets.size() + 1).append(" /Root ").append(CATALOG)
+                    .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+            write(sb.toString());
+        } finally {
+            out.close();
+        }
+    }
+
+    private int beginObject() throws IOException {
+        offsets.add(out.count);
+        int number = offsets.size();
+        write(number + " 0 obj\n");
+        return number;
+    }
+
+    private void write(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 上次阅读画面的快照，冷启动时在 PdfRenderer 就绪前先显示出来。
+ * 快照附带一个签名（文件、大小、修改时间、页码和阅读设置），只有签名完全一致才使用，
+ * 避免文件被替换或设置改变后闪出一张不对的画面。
+ */
+public class LaunchSnapshot {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String IMAGE_NAME = "launch_snapshot.webp";
+    private static final String SIGNATURE_NAME = "launch_snapshot.sig";
+    private static final int QUALITY = 85;
+
+    private final File image;
+    private final File signature;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> new Thread(r, "LaunchSnapshot"));
+
+    public LaunchSnapshot(Context context) {
+        image = new File(context.getFilesDir(), IMAGE_NAME);
+        signature = new File(context.getFilesDir(), SIGNATURE_NAME);
+    }
+
+    /** 签名匹配时解码快照，否则返回 null；在主线程调用，快照只有一屏大小 */
+    public Bitmap load(String expectedSignature) {
+        if (expectedSignature == null || !image.exists() || !expectedSignature.equals(readSignature())) return null;
+        return BitmapFactory.decodeFile(image.getPath());
+    }
+
+    /** 异步保存；snapshot 归本类所有，写完即回收 */
+    public void saveAsync(String newSignature, Bitmap snapshot) {
+        io.execute(() -> {
+            File tmp = new File(image.getPath() + ".tmp");
+            try {
+                try (OutputStream out = new FileOutputStream(tmp)) {
+                    if (!snapshot.compress(Bitmap.CompressFormat.WEBP, QUALITY, out)) return;
+                }
+                // 先让旧签名失效，图片替换完成后再写新签名
+                signature.delete();
+                if (!tmp.renameTo(image)) return;
+                try (OutputStream out = new FileOutputStream(signature)) {
+                    out.write(newSignature.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "保存启动快照失败", e);
+            } finally {
+                tmp.delete();
+                snapshot.recycle();
+            }
+        });
+    }
+
+    private String readSignature() {
+        if (!signature.exists()) return null;
+        try (InputStream in = new FileInputStream(signature)) {
+            byte[] buf = new byte[(int) signature.length()];
+            int n = 0;
+            while (n < buf.length) {
+                int r = in.read(buf, n, buf.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+            return new String(buf, 0, n, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -4,8 +4,11 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import android.Manifest;
-import android.content.ContentResolver;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
@@ -13,26 +16,27 @@ import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
+import android.graphics.ColorFilter;
 import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.text.InputType;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.EditText;
@@ -43,11 +47,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -56,34 +63,59 @@ public class MainActivity extends AppCompatActivity {
     private FrameLayout readerContainer;
     private ImageView pdfImageView;
     private Button nightModeBtn, halfPageBtn, pageModeBtn, openFileBtn, refreshBtn, rotateBtn, flipModeBtn;
+    private View readerTopBar;
 
-    // PDF相关
-    private PdfRenderer pdfRenderer;
-    private ParcelFileDescriptor fileDescriptor;
+    // PDF相关：PdfRenderer 由渲染引擎的工作线程独占
+    private PageRenderEngine renderEngine;
+    private boolean documentOpen = false;
+    // 文档正在渲染线程上打开，阅读界面已显示
+    private boolean documentOpening = false;
     private int currentPage = 0;
     private int totalPages = 0;
     private String currentFilePath;
+    private DocumentSource currentSource;
 
     // 设置
     private boolean nightMode = false;
+    // 日间的页面色调（PageTone），夜间模式打开时让位于反色
+    private int pageTone = PageTone.NORMAL;
     private boolean halfPageMode = false;
     private boolean doublePageMode = false;
     private boolean leftPage = false;
     private boolean controlsVisible = true;
     private boolean isRotated = false;
 
-    // 翻页效果
+    // 预载模式
     private boolean flipPageMode = false;
-    private boolean isFlipping = false;
-
-    // 页面缓存
-    private Bitmap prevPageCache;
-    private Bitmap currentPageCache;
-    private Bitmap nextPageCache;
-    private int cachedPrevPage = -1;
-    private int cachedCurrentPage = -1;
-    private int cachedNextPage = -1;
-    private boolean cacheInitialized = false;
+    private final PrefetchScheduler prefetchScheduler = new PrefetchScheduler();
+
+    // 页面缓存与位图池
+    private PageBitmapCache pageCache;
+    private DiskPageCache diskPageCache;
+    private LaunchSnapshot launchSnapshot;
+    private PdfLibraryIndex libraryIndex;
+    private PdfFileListAdapter fileListAdapter;
+    private ThumbnailProvider thumbnailProvider;
+    private UriImportCache uriImportCache;
+    private DocumentMetadataIndex metadataIndex;
+    private DocumentMetadataIndex.Metadata documentMetadata;
+    // 本次打开的元数据已读过盘（可能没有）
+    private boolean metadataLoaded = false;
+    private RecyclerView thumbnailGrid;
+    private ReadingProgressStore progressStore;
+    // 文件列表各行的阅读进度，按路径在后台查好；值为 null 表示查过但没有记录
+    private final Map<String, ReadingProgressStore.Progress> listProgress = new HashMap<>();
+    private final Set<String> listProgressPending = new HashSet<>();
+    private final List<String> listProgressBatch = new ArrayList<>();
+    private int listProgressGeneration = 0;
+    private DocumentFingerprint fingerprints;
+    // 当前文档阅读进度的键，指纹算出来之前是 id
+    private String progressKey;
+    private int openedAtPage;
+    private String displayedSignature;
+    private final Runnable snapshotSaver = this::saveLaunchSnapshot;
+    private static final int SNAPSHOT_DELAY = 1000;
+    private BitmapPool bitmapPool;
 
     // 缩放相关
     private float scaleFactor = 1.0f;
@@ -99,6 +131,18 @@ public class MainActivity extends AppCompatActivity {
     private static final int DRAG = 1;
     private static final int ZOOM = 2;
     private long lastClickTime = 0;
+
+    // 深度缩放图块
+    private TileOverlayView tileOverlay;
+    private TileCache tileCache;
+    private PageBitmapCache.Key displayedKey;
+    private int tileLevel = 0;
+    private int tileTagSeq = 0;
+    private final List<String> pendingTileTags = new ArrayList<>();
+    private final Runnable tileRequest = this::requestZoomTiles;
+    private static final float TILE_MIN_ZOOM = 1.2f;
+    private static final int TILE_MAX_LEVEL = 8;
+    private static final int TILE_SETTLE_DELAY = 150;
     private static final int DOUBLE_TAP_TIME_THRESHOLD = 300;
 
     // 点击和滑动
@@ -119,6 +163,12 @@ public class MainActivity extends AppCompatActivity {
     private static final String AUTO_OPEN_LAST_FILE = "auto_open_last_file";
     private static final String FIRST_RUN = "first_run";
 
+    private static final String TAG_DISPLAY = "display";
+    private static final String TAG_PREFETCH_PREFIX = "prefetch_";
+    // 预载槽位数：主方向最多 4 步 + 反方向 1 步
+    private static final int PREFETCH_SLOTS = 5;
+    private static final String TAG_TILE_PREFIX = "tile_";
+
     private static final int PERMISSION_REQUEST_CODE = 100;
     private static final int FILE_PICKER_REQUEST_CODE = 101;
 
@@ -144,13 +194,26 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.begin();
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN,
                 WindowManager.LayoutParams.FLAG_FULLSCREEN);
         prefs = getSharedPreferences("pdf_reader", MODE_PRIVATE);
+        bitmapPool = new BitmapPool(PageBitmapCache.budgetFor(this) / 2);
+        pageCache = new PageBitmapCache(this, bitmapPool);
+        tileCache = new TileCache(PageBitmapCache.budgetFor(this) / 4);
+        diskPageCache = new DiskPageCache(this, DiskPageCache.DEFAULT_BUDGET, bitmapPool);
+        launchSnapshot = new LaunchSnapshot(this);
+        libraryIndex = new PdfLibraryIndex(this);
+        thumbnailProvider = new ThumbnailProvider(this);
+        uriImportCache = new UriImportCache(this);
+        metadataIndex = new DocumentMetadataIndex(this);
+        progressStore = new ReadingProgressStore(this);
+        fingerprints = new DocumentFingerprint(this);
         loadSettings();
         boolean firstRun = prefs.getBoolean(FIRST_RUN, true);
         if (firstRun) {
             prefs.edit().putBoolean(FIRST_RUN, false).apply();
+            StartupTrace.abandon();
             createMainLayout();
             requestPermissionsOnFirstRun();
         } else {
@@ -160,6 +223,7 @@ public class MainActivity extends AppCompatActivity {
 
     private void loadSettings() {
         nightMode = prefs.getBoolean("night_mode", false);
+        pageTone = prefs.getInt("page_tone", PageTone.NORMAL);
         halfPageMode = prefs.getBoolean("half_page", false);
         doublePageMode = prefs.getBoolean("double_page", false);
         isRotated = prefs.getBoolean("is_rotated", false);
@@ -168,6 +232,7 @@ public class MainActivity extends AppCompatActivity {
 
     private void saveSettings() {
         prefs.edit().putBoolean("night_mode", nightMode)
+                .putInt("page_tone", pageTone)
                 .putBoolean("half_page", halfPageMode)
                 .putBoolean("double_page", doublePageMode)
                 .putBoolean("is_rotated", isRotated)
@@ -179,19 +244,35 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void saveReadingPosition() {
-        if (currentFilePath != null) {
-            prefs.edit().putInt(currentFilePath + "_page", currentPage)
-                    .putInt(currentFilePath + "_half_page_left", leftPage ? 1 : 0).apply();
-            saveLastOpenedFile(currentFilePath);
+        if (progressKey != null) {
+            progressStore.put(progressKey, currentPage, leftPage);
+            // 翻页停下来后再保存启动快照，连续翻页时不反复压缩
+            if (pdfImageView != null) {
+                pdfImageView.removeCallbacks(snapshotSaver);
+                pdfImageView.postDelayed(snapshotSaver, SNAPSHOT_DELAY);
+            }
         }
     }
 
-    private int getReadingPosition(String filePath) {
-        return prefs.getInt(filePath + "_page", 0);
+    // 启动快照签名：文件没变、位置和阅读设置都一致时才能拿快照充当首屏
+    private String snapshotSignature(DocumentSource source, int page, boolean left) {
+        return source.cacheId() + "|" + page + "|" + (halfPageMode && left)
+                + "|" + halfPageMode + doublePageMode + isRotated;
+    }
+
+    private void saveLaunchSnapshot() {
+        if (pdfImageView == null || displayedSignature == null) return;
+        BitmapDrawable drawable = (BitmapDrawable) pdfImageView.getDrawable();
+        if (drawable == null || drawable.getBitmap() == null || drawable.getBitmap().isRecycled()) return;
+        Bitmap copy = drawable.getBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        if (copy != null) launchSnapshot.saveAsync(displayedSignature, copy);
     }
 
-    private boolean getHalfPageLeftState(String filePath) {
-        return prefs.getInt(filePath + "_half_page_left", 0) == 1;
+    // 先按内容指纹找进度（文件移动、改名或换了 URI 也能找回），再退回旧的按 id 记录
+    private ReadingProgressStore.Progress savedProgress(DocumentSource source) {
+        String fingerprint = source.fingerprint != null ? source.fingerprint : fingerprints.peek(source);
+        ReadingProgressStore.Progress progress = fingerprint != null ? progressStore.get(fingerprint) : null;
+        return progress != null ? progress : progressStore.get(source.id);
     }
 
     private void createMainLayout() {
@@ -250,13 +331,13 @@ public class MainActivity extends AppCompatActivity {
         String last = prefs.getString(LAST_OPENED_FILE, null);
         boolean auto = prefs.getBoolean(AUTO_OPEN_LAST_FILE, true);
         if (auto && last != null && !last.isEmpty()) {
-            File f = new File(last);
-            if (f.exists() && f.canRead()) {
+            if (DocumentSource.of(this, last).canOpen()) {
                 createMainLayout();
-                new android.os.Handler().postDelayed(() -> openPdfFile(last), 100);
+                openPdfFile(last);
                 return;
             } else prefs.edit().remove(LAST_OPENED_FILE).apply();
         }
+        StartupTrace.abandon();
         createMainLayout();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE)
@@ -268,7 +349,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        if (pdfRenderer == null) {
+        if (!documentOpen && !documentOpening) {
             createMainLayout();
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
                 if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE)
@@ -279,7 +360,18 @@ public class MainActivity extends AppCompatActivity {
             if (pdfImageView != null) {
                 pdfImageView.postDelayed(() -> { pdfImageView.invalidate(); centerImage(); }, 200);
             }
-            if (flipPageMode && !cacheInitialized) pdfImageView.postDelayed(this::initPageCache, 500);
+            pdfImageView.postDelayed(this::prefetchNeighbours, 500);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // 离开前把待保存的阅读进度和启动快照立即写出
+        progressStore.flush();
+        if (pdfImageView != null) {
+            pdfImageView.removeCallbacks(snapshotSaver);
+            saveLaunchSnapshot();
         }
     }
 
@@ -315,19 +407,45 @@ public class MainActivity extends AppCompatActivity {
         fileListLayout.setOrientation(LinearLayout.VERTICAL);
         fileListLayout.setPadding(20, 20, 20, 20);
         fileListLayout.setBackgroundColor(getBackgroundColor());
-        addContinueReadingButton();
+        fileListLayout.setLayoutParams(new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 0, 1.0f));
+        createFileListView();
         scanPdfFiles();
         mainLayout.addView(topBar);
         mainLayout.addView(fileListLayout);
     }
 
-    private void addContinueReadingButton() {
+    // 文件列表用 RecyclerView 承载，列表头尾的按钮作为固定行一起滚动
+    private void createFileListView() {
+        resetListProgress();
+        RecyclerView recycler = new RecyclerView(this);
+        recycler.setLayoutParams(new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.MATCH_PARENT));
+        recycler.setLayoutManager(new LinearLayoutManager(this));
+        fileListAdapter = new PdfFileListAdapter(new PdfFileListAdapter.RowBinder() {
+            @Override
+            public View createRow(ViewGroup parent) { return createFileRow(); }
+
+            @Override
+            public void bindRow(View row, File file) { bindFileRow((Button) row, file); }
+        });
+        recycler.setAdapter(fileListAdapter);
+        fileListLayout.addView(recycler);
+    }
+
+    private List<View> listRows(View... views) {
+        List<View> rows = new ArrayList<>();
+        for (View v : views) if (v != null) rows.add(v);
+        return rows;
+    }
+
+    private View createContinueReadingButton() {
         String last = prefs.getString(LAST_OPENED_FILE, null);
         if (last != null && !last.isEmpty()) {
-            File f = new File(last);
-            if (f.exists() && f.canRead()) {
+            DocumentSource source = DocumentSource.of(this, last);
+            if (source.canOpen()) {
                 Button btn = new Button(this);
-                btn.setText("继续阅读: " + getShortFileName(f.getName()));
+                btn.setText("继续阅读: " + getShortFileName(source.displayName));
                 btn.setBackgroundColor(getSpecialButtonBackgroundColor());
                 btn.setTextColor(getSpecialButtonTextColor());
                 btn.setTextSize(14); btn.setAllCaps(false);
@@ -337,9 +455,10 @@ public class MainActivity extends AppCompatActivity {
                 btn.setLayoutParams(params);
                 setupButtonStyle(btn, true);
                 btn.setOnClickListener(v -> openPdfFile(last));
-                fileListLayout.addView(btn);
+                return btn;
             }
         }
+        return null;
     }
 
     private String getShortFileName(String name) {
@@ -381,55 +500,94 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void scanPdfFiles() {
-        fileListLayout.removeAllViews();
-        addContinueReadingButton();
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.READ_EXTERNAL_STORAGE)
                 != PackageManager.PERMISSION_GRANTED) {
             Toast.makeText(this, "需要存储权限来扫描文件", Toast.LENGTH_SHORT).show();
             showFileListWithoutScan();
             return;
         }
+        List<File> found = new ArrayList<>();
         try {
             File downDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
             if (downDir.exists() && downDir.isDirectory()) {
                 File[] files = downDir.listFiles((d, n) -> n.toLowerCase().endsWith(".pdf"));
-                if (files != null && files.length > 0) {
-                    for (File f : files) addFileButton(f);
-                } else showNoFilesMessage();
-            } else showNoFilesMessage();
+                if (files != null) found.addAll(Arrays.asList(files));
+            }
         } catch (SecurityException e) {
-            showNoFilesMessage();
+            found.clear();
         }
-        addFileChooserOptions();
+        fileListAdapter.setHeader(listRows(createContinueReadingButton()));
+        fileListAdapter.setFiles(found);
+        fileListAdapter.setFooter(listRows(found.isEmpty() ? createNoFilesMessage() : null, createFileChooserOptions()));
     }
 
-    private void addFileButton(File file) {
+    private Button createFileRow() {
         Button btn = new Button(this);
-        String name = getShortFileName(file.getName());
-        int lastPage = getReadingPosition(file.getAbsolutePath());
-        if (lastPage > 0) name += " (读到第" + (lastPage + 1) + "页)";
-        btn.setText(name);
         btn.setBackgroundColor(getButtonBackgroundColor());
         btn.setTextColor(getButtonTextColor());
         btn.setTextSize(14); btn.setAllCaps(false);
-        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT);
+        RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(
+                RecyclerView.LayoutParams.MATCH_PARENT, RecyclerView.LayoutParams.WRAP_CONTENT);
         params.bottomMargin = 10;
         btn.setLayoutParams(params);
         setupButtonStyle(btn, true);
+        return btn;
+    }
+
+    // 绑定行只查内存表；没查过的先不显示进度，登记下来交给后台
+    private void bindFileRow(Button btn, File file) {
+        String path = file.getAbsolutePath();
+        String name = getShortFileName(file.getName());
+        if (!listProgress.containsKey(path)) requestListProgress(path);
+        ReadingProgressStore.Progress saved = listProgress.get(path);
+        int lastPage = saved != null ? saved.page : 0;
+        PdfLibraryIndex.Entry entry = libraryIndex.get(path);
+        int pages = entry != null ? entry.pageCount : 0;
+        if (lastPage > 0) name += " (读到第" + (lastPage + 1) + (pages > 0 ? "/" + pages : "") + "页)";
+        else if (pages > 0) name += " (共" + pages + "页)";
+        btn.setText(name);
         btn.setOnClickListener(v -> openPdfFile(file.getAbsolutePath()));
-        fileListLayout.addView(btn);
     }
 
-    private void showNoFilesMessage() {
+    // 同一帧里绑定的行攒成一批，在后台取文件信息、指纹和进度，查完一次性刷新文件行
+    private void requestListProgress(String path) {
+        if (!listProgressPending.add(path)) return;
+        listProgressBatch.add(path);
+        if (listProgressBatch.size() == 1) fileListLayout.post(this::loadListProgress);
+    }
+
+    private void loadListProgress() {
+        List<String> paths = new ArrayList<>(listProgressBatch);
+        listProgressBatch.clear();
+        int generation = listProgressGeneration;
+        new Thread(() -> {
+            Map<String, ReadingProgressStore.Progress> found = new HashMap<>();
+            for (String path : paths) found.put(path, savedProgress(DocumentSource.forFile(new File(path))));
+            runOnUiThread(() -> {
+                if (generation != listProgressGeneration) return;
+                listProgress.putAll(found);
+                if (fileListAdapter != null) fileListAdapter.refreshFiles();
+            });
+        }, "ListProgress").start();
+    }
+
+    // 每次回到文件列表都重新查，刚读过的书显示新的进度
+    private void resetListProgress() {
+        listProgressGeneration++;
+        listProgress.clear();
+        listProgressPending.clear();
+        listProgressBatch.clear();
+    }
+
+    private View createNoFilesMessage() {
         TextView tv = new TextView(this);
         tv.setText("未找到PDF文件\n\n请将PDF文件放置在：\n手机存储 → Download文件夹\n\n或者使用下方选项选择文件");
         tv.setTextSize(16); tv.setGravity(Gravity.CENTER);
         tv.setTextColor(getTextColor()); tv.setPadding(0, 50, 0, 50);
-        fileListLayout.addView(tv);
+        return tv;
     }
 
-    private void addFileChooserOptions() {
+    private View createFileChooserOptions() {
         LinearLayout optionsLayout = new LinearLayout(this);
         optionsLayout.setOrientation(LinearLayout.VERTICAL);
         optionsLayout.setPadding(0, 20, 0, 0);
@@ -480,7 +638,7 @@ public class MainActivity extends AppCompatActivity {
         setupButtonStyle(hejuBtn, true);
         optionsLayout.addView(hejuBtn);
 
-        fileListLayout.addView(optionsLayout);
+        return optionsLayout;
     }
 
     private void choosePdfFile() {
@@ -490,101 +648,233 @@ public class MainActivity extends AppCompatActivity {
         startActivityForResult(intent, FILE_PICKER_REQUEST_CODE);
     }
 
+    // 全盘扫描走持久化书库索引：已索引的文件立即列出，新发现的边扫边加，扫完再按结果整理一遍
     private void scanAllPdfFiles() {
-        fileListLayout.removeAllViews();
         TextView scanningText = new TextView(this);
         scanningText.setText("正在扫描全盘PDF文件，请稍候...");
         scanningText.setTextSize(16); scanningText.setGravity(Gravity.CENTER);
         scanningText.setTextColor(getTextColor()); scanningText.setPadding(0, 50, 0, 50);
-        fileListLayout.addView(scanningText);
-        new Thread(() -> {
-            List<File> pdfFiles = new ArrayList<>();
-            try {
-                String[] scanPaths = {
-                    Environment.getExternalStorageDirectory().getAbsolutePath(),
-                    Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getAbsolutePath(),
-                    Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS).getAbsolutePath(),
-                    Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getAbsolutePath(),
-                    Environment.getDataDirectory().getAbsolutePath()
-                };
-                for (String path : scanPaths) {
-                    try { scanDirectoryForPdf(new File(path), pdfFiles); } catch (SecurityException e) {}
-                }
-            } catch (Exception e) { Log.e("PDF_DEBUG", "扫描错误: " + e.getMessage()); }
-            runOnUiThread(() -> {
-                fileListLayout.removeAllViews();
-                addContinueReadingButton();
-                if (pdfFiles.isEmpty()) showNoFilesMessage();
-                else for (File f : pdfFiles) addFileButton(f);
-                addFileChooserOptions();
-            });
-        }).start();
-    }
-
-    private void scanDirectoryForPdf(File directory, List<File> pdfFiles) {
-        if (directory == null || !directory.exists() || !directory.canRead()) return;
-        File[] files = directory.listFiles();
-        if (files == null) return;
-        for (File file : files) {
-            if (file.isDirectory()) {
-                if (!file.getName().startsWith(".") && 
-                    !file.getName().equals("Android") &&
-                    !file.getName().equals("lost+found")) {
-                    scanDirectoryForPdf(file, pdfFiles);
+        final PdfFileListAdapter adapter = fileListAdapter;
+        adapter.setHeader(listRows(createContinueReadingButton(), scanningText));
+        adapter.setFiles(new ArrayList<>());
+        adapter.setFooter(new ArrayList<>());
+        final Set<String> shown = new HashSet<>();
+        String[] scanPaths = {
+            Environment.getExternalStorageDirectory().getAbsolutePath(),
+            Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS).getAbsolutePath(),
+            Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS).getAbsolutePath(),
+            Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getAbsolutePath(),
+            Environment.getDataDirectory().getAbsolutePath()
+        };
+        libraryIndex.scan(scanPaths, new PdfLibraryIndex.Listener() {
+            @Override
+            public void onFound(List<PdfLibraryIndex.Entry> entries) {
+                if (fileListAdapter != adapter) return;
+                List<File> batch = new ArrayList<>();
+                for (PdfLibraryIndex.Entry e : entries) {
+                    if (shown.add(e.path)) batch.add(e.file());
                 }
-            } else if (file.isFile() && file.getName().toLowerCase().endsWith(".pdf")) {
-                pdfFiles.add(file);
+                adapter.addFiles(batch);
             }
-        }
+
+            @Override
+            public void onFinished(List<PdfLibraryIndex.Entry> all) {
+                if (fileListAdapter != adapter) return;
+                List<File> files = new ArrayList<>(all.size());
+                for (PdfLibraryIndex.Entry e : all) files.add(e.file());
+                adapter.setHeader(listRows(createContinueReadingButton()));
+                adapter.setFiles(files);
+                adapter.setFooter(listRows(files.isEmpty() ? createNoFilesMessage() : null, createFileChooserOptions()));
+            }
+        });
     }
 
     private void openPdfFile(String filePath) {
+        openDocument(DocumentSource.of(this, filePath));
+    }
+
+    // 本地文件和可定位的 content:// URI 都走这里，描述符在渲染线程上直接打开
+    private void openDocument(DocumentSource opened) {
+        String known = fingerprints.peek(opened);
+        final DocumentSource source = known != null ? opened.withFingerprint(known) : opened;
+        final String filePath = source.id;
         try {
-            File file = new File(filePath);
-            if (!file.exists() || !file.canRead()) {
+            if (!source.canOpen()) {
                 Toast.makeText(this, "无法打开文件", Toast.LENGTH_SHORT).show();
                 return;
             }
-            fileDescriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
-            pdfRenderer = new PdfRenderer(fileDescriptor);
+            if (renderEngine == null) renderEngine = new PageRenderEngine(bitmapPool);
+            documentOpen = false;
+            documentOpening = true;
+            prefetchScheduler.reset();
             currentFilePath = filePath;
-            totalPages = pdfRenderer.getPageCount();
-            currentPage = getReadingPosition(filePath);
-            leftPage = getHalfPageLeftState(filePath);
-            if (currentPage >= totalPages) currentPage = totalPages - 1;
-            if (currentPage < 0) currentPage = 0;
-            saveLastOpenedFile(filePath);
+            currentSource = source;
+            ReadingProgressStore.Progress saved = savedProgress(source);
+            currentPage = saved != null ? saved.page : 0;
+            leftPage = saved != null && saved.left;
+            openedAtPage = currentPage;
+            progressKey = source.progressKey();
+            if (source.fingerprint == null) fingerprints.computeAsync(source, this::onFingerprint);
+            totalPages = 0;
+            displayedKey = null;
+            displayedSignature = null;
+            documentMetadata = null;
+            metadataLoaded = false;
+            metadataIndex.load(source.cacheId(), metadata -> onMetadataLoaded(source, metadata));
             showReaderView();
-        } catch (IOException e) {
+            showLaunchSnapshot(source);
+            StartupTrace.mark("readerView");
+            renderEngine.openDocument(source,
+                    new PageRenderEngine.OpenCallback() {
+                        @Override
+                        public void onOpened(int pageCount) {
+                            StartupTrace.mark("documentOpened");
+                            documentOpening = false;
+                            documentOpen = true;
+                            totalPages = pageCount;
+                            libraryIndex.recordPageCount(filePath, pageCount);
+                            if (currentPage >= totalPages) currentPage = totalPages - 1;
+                            if (currentPage < 0) currentPage = 0;
+                            saveLastOpenedFile(filePath);
+                            displayCurrentPage();
+                            if (metadataLoaded) applyMetadata(source);
+                        }
+
+                        @Override
+                        public void onFailed(Exception e) {
+                            Log.e("PDF_DEBUG", "打开PDF失败", e);
+                            StartupTrace.abandon();
+                            documentOpening = false;
+                            // 打不开的 URI 不再留作"继续阅读"
+                            if (filePath.equals(prefs.getString(LAST_OPENED_FILE, null))) {
+                                prefs.edit().remove(LAST_OPENED_FILE).apply();
+                            }
+                            Toast.makeText(MainActivity.this, "打开PDF失败", Toast.LENGTH_SHORT).show();
+                            goBackToFileList();
+                        }
+                    });
+        } catch (Exception e) {
+            documentOpening = false;
             Toast.makeText(this, "打开PDF失败", Toast.LENGTH_SHORT).show();
         }
     }
 
+    // 指纹算出来后进度、缓存、元数据和启动快照都改用指纹作键，下次打开（已记住指纹）才找得到；
+    // 这本书在别的位置读过、而现在还停在打开时的页，就跳到记下的位置
+    private void onFingerprint(DocumentSource source, String fingerprint) {
+        if (currentSource != source) return;
+        DocumentSource keyed = source.withFingerprint(fingerprint);
+        currentSource = keyed;
+        if (displayedSignature != null && displayedSignature.startsWith(source.cacheId())) {
+            displayedSignature = keyed.cacheId() + displayedSignature.substring(source.cacheId().length());
+        }
+        rekeyMetadata(keyed);
+        progressKey = fingerprint;
+        ReadingProgressStore.Progress saved = progressStore.get(fingerprint);
+        if (saved == null || currentPage != openedAtPage) {
+            progressStore.put(fingerprint, currentPage, leftPage);
+            return;
+        }
+        if (saved.page == currentPage && saved.left == leftPage) return;
+        currentPage = saved.page;
+        leftPage = saved.left;
+        openedAtPage = currentPage;
+        if (!documentOpen) return;
+        if (currentPage >= totalPages) currentPage = totalPages - 1;
+        if (currentPage < 0) currentPage = 0;
+        displayCurrentPage();
+    }
+
+    // 已经建好的元数据另存到指纹下；还没有或还在建的，按指纹重新读盘，没有再建
+    private void rekeyMetadata(DocumentSource keyed) {
+        DocumentMetadataIndex.Metadata built = documentMetadata;
+        if (metadataLoaded && built != null && built.flagsChecked()) {
+            documentMetadata = metadataIndex.rekey(built, keyed.cacheId());
+            return;
+        }
+        documentMetadata = null;
+        metadataLoaded = false;
+        metadataIndex.load(keyed.cacheId(), metadata -> onMetadataLoaded(keyed, metadata));
+    }
+
+    // 读盘结果可能先于文档打开到达，也可能晚到；两边都到齐后再用
+    private void onMetadataLoaded(DocumentSource source, DocumentMetadataIndex.Metadata metadata) {
+        if (currentSource != source) return;
+        metadataLoaded = true;
+        documentMetadata = metadata;
+        if (documentOpen) applyMetadata(source);
+    }
+
+    // 页数对得上就预填页面尺寸，否则（第一次打开或已失效）在后台重建；上次没来得及打完页面标记的也补上
+    private void applyMetadata(DocumentSource source) {
+        if (documentMetadata != null && documentMetadata.pageCount == totalPages) {
+            renderEngine.primePageSizes(documentMetadata.widths, documentMetadata.heights);
+            if (!documentMetadata.flagsChecked()) buildMetadata(source);
+        } else {
+            documentMetadata = null;
+            buildMetadata(source);
+        }
+    }
+
+    // 第一次打开的文档在后台建立元数据，下次打开直接读盘
+    private void buildMetadata(DocumentSource source) {
+        metadataIndex.build(source, source.cacheId(), metadata -> {
+            if (currentSource != source || !documentOpen) return;
+            documentMetadata = metadata;
+            renderEngine.primePageSizes(metadata.widths, metadata.heights);
+        });
+    }
+
+    // 文档还在打开时先摆上次保存的画面，真正的渲染结果到了再替换
+    private void showLaunchSnapshot(DocumentSource source) {
+        Bitmap snapshot = launchSnapshot.load(snapshotSignature(source, currentPage, leftPage));
+        if (snapshot == null) return;
+        pdfImageView.setImageBitmap(snapshot);
+        scaleFactor = 1.0f; matrix.reset();
+        bottomPageText.setText(totalPages > 0 ? (currentPage + 1) + "/" + totalPages : String.valueOf(currentPage + 1));
+        pdfImageView.postDelayed(this::centerImage, 100);
+        StartupTrace.firstPage(this, "snapshot");
+    }
+
+    // 提供方给的是可定位的描述符就直接打开，不再复制整本书；否则复制一份（同一 URI 只复制一次）
+    // 查询和探测描述符都要访问提供方，放在导入线程上做
     private void openPdfFromUri(Uri uri) {
-        try {
-            ContentResolver resolver = getContentResolver();
-            String displayName = null;
-            try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
-                if (cursor != null && cursor.moveToFirst()) {
-                    int nameIndex = cursor.getColumnIndex(android.provider.OpenableColumns.DISPLAY_NAME);
-                    if (nameIndex != -1) displayName = cursor.getString(nameIndex);
-                }
-            } catch (Exception e) {}
-            String tempFileName = displayName != null ? displayName : "temp_pdf_" + System.currentTimeMillis() + ".pdf";
-            File tempFile = new File(getCacheDir(), tempFileName);
-            try (InputStream in = resolver.openInputStream(uri);
-                 FileOutputStream out = new FileOutputStream(tempFile)) {
-                if (in == null) return;
-                byte[] buffer = new byte[8192];
-                int len;
-                while ((len = in.read(buffer)) != -1) out.write(buffer, 0, len);
+        TextView progressText = new TextView(this);
+        progressText.setPadding(50, 30, 50, 30);
+        AlertDialog[] dialog = new AlertDialog[1];
+        new Thread(() -> {
+            DocumentSource source = DocumentSource.forUri(getContentResolver(), uri);
+            if (source.isSeekable()) {
+                runOnUiThread(() -> openDocument(source));
+                return;
             }
-            openPdfFile(tempFile.getAbsolutePath());
-            if (currentFilePath != null && currentFilePath.contains("temp_pdf_")) new File(currentFilePath).delete();
-            currentFilePath = tempFile.getAbsolutePath();
-        } catch (IOException e) {
-            Toast.makeText(this, "无法打开文件", Toast.LENGTH_SHORT).show();
-        }
+            runOnUiThread(() -> {
+                progressText.setText("正在复制: " + source.displayName);
+                dialog[0] = new AlertDialog.Builder(this)
+                        .setTitle("导入PDF").setView(progressText).setCancelable(false).show();
+            });
+            long[] lastUpdate = {0};
+            try {
+                File copy = uriImportCache.importUri(getContentResolver(), uri, source.size(), (copied, total) -> {
+                    long now = SystemClock.uptimeMillis();
+                    if (now - lastUpdate[0] < 200) return;
+                    lastUpdate[0] = now;
+                    String text = "正在复制: " + (copied >> 20) + "MB"
+                            + (total > 0 ? " / " + (total >> 20) + "MB (" + (copied * 100 / total) + "%)" : "");
+                    runOnUiThread(() -> progressText.setText(text));
+                });
+                runOnUiThread(() -> {
+                    dialog[0].dismiss();
+                    openPdfFile(copy.getAbsolutePath());
+                });
+            } catch (IOException e) {
+                Log.e("PDF_DEBUG", "复制PDF失败", e);
+                runOnUiThread(() -> {
+                    dialog[0].dismiss();
+                    Toast.makeText(this, "无法打开文件", Toast.LENGTH_SHORT).show();
+                });
+            }
+        }, "UriImport").start();
     }
 
     private String getRealPathFromUri(Uri uri) {
@@ -621,7 +911,7 @@ public class MainActivity extends AppCompatActivity {
         pdfImageView.setScaleType(ImageView.ScaleType.MATRIX);
 
         scaleFactor = 1.0f; matrix.reset(); savedMatrix.reset();
-        mode = NONE; isFlipping = false;
+        mode = NONE;
 
         pdfImageView.setOnTouchListener((v, e) -> {
             if (e.getPointerCount() == 2) return handleZoomMode((ImageView) v, e);
@@ -633,8 +923,13 @@ public class MainActivity extends AppCompatActivity {
             return true;
         });
 
+        tileOverlay = new TileOverlayView(this);
+        tileOverlay.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+
         LinearLayout topBar = createReaderTopBar();
         topBar.setId(View.generateViewId());
+        readerTopBar = topBar;
 
         bottomBar = new LinearLayout(this);
         bottomBar.setOrientation(LinearLayout.HORIZONTAL);
@@ -680,6 +975,8 @@ public class MainActivity extends AppCompatActivity {
         bottomBar.addView(bottomPrevButton);
 
         readerContainer.addView(pdfImageView);
+        readerContainer.addView(tileOverlay);
+        applyPageTone();
         readerContainer.addView(topBar);
         readerContainer.addView(bottomBar);
         mainLayout.addView(readerContainer);
@@ -747,24 +1044,83 @@ public class MainActivity extends AppCompatActivity {
         flipModeBtn.setOnClickListener(v -> toggleFlipPageMode());
         setupButtonStyle(flipModeBtn, false);
 
+        Button toneBtn = new Button(this);
+        toneBtn.setText("色调");
+        toneBtn.setBackgroundColor(getButtonBackgroundColor());
+        toneBtn.setTextColor(getButtonTextColor());
+        toneBtn.setTextSize(11); toneBtn.setAllCaps(false);
+        toneBtn.setOnClickListener(v -> cyclePageTone());
+        setupButtonStyle(toneBtn, false);
+
+        Button thumbBtn = new Button(this);
+        thumbBtn.setText("缩略");
+        thumbBtn.setBackgroundColor(getButtonBackgroundColor());
+        thumbBtn.setTextColor(getButtonTextColor());
+        thumbBtn.setTextSize(11); thumbBtn.setAllCaps(false);
+        thumbBtn.setOnClickListener(v -> showThumbnailGrid());
+        setupButtonStyle(thumbBtn, false);
+
         topBar.addView(backBtn);
         topBar.addView(nightBtn);
         topBar.addView(halfPageBtn);
         topBar.addView(pageModeBtn);
         topBar.addView(rotateBtn);
         topBar.addView(flipModeBtn);
+        topBar.addView(toneBtn);
+        topBar.addView(thumbBtn);
         return topBar;
     }
 
+    // ==================== 缩略图总览 ====================
+    // 整本书的缩略图网格，盖在阅读界面上；点一页跳过去
+    private void showThumbnailGrid() {
+        if (!documentOpen || thumbnailGrid != null) return;
+        thumbnailProvider.open(currentSource);
+        DisplayMetrics dm = getResources().getDisplayMetrics();
+        int span = dm.widthPixels > dm.heightPixels ? 6 : 4;
+        thumbnailGrid = new RecyclerView(this);
+        thumbnailGrid.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+        thumbnailGrid.setBackgroundColor(getBackgroundColor());
+        thumbnailGrid.setLayoutManager(new GridLayoutManager(this, span));
+        thumbnailGrid.setAdapter(new ThumbnailGridAdapter(thumbnailProvider, totalPages, currentPage,
+                dm.widthPixels / span, getButtonTextColor(), getButtonBackgroundColor(), currentToneFilter(), page -> {
+                    hideThumbnailGrid();
+                    currentPage = page;
+                    if (halfPageMode) leftPage = true;
+                    prefetchScheduler.reset();
+                    displayCurrentPage();
+                }));
+        thumbnailGrid.scrollToPosition(currentPage);
+        readerContainer.addView(thumbnailGrid);
+    }
+
+    private boolean hideThumbnailGrid() {
+        if (thumbnailGrid == null) return false;
+        // 先解除适配器，让各格子的未完成请求随回收一起取消
+        thumbnailGrid.setAdapter(null);
+        if (readerContainer != null) readerContainer.removeView(thumbnailGrid);
+        thumbnailGrid = null;
+        return true;
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (hideThumbnailGrid()) return;
+        super.onBackPressed();
+    }
+
     // ==================== 翻页与显示 ====================
     private void goToPrevPage() {
-        if (flipPageMode && cacheInitialized) performCachedFlip(false);
-        else originalGoToPrevPage();
+        if (!documentOpen) return;
+        prefetchScheduler.onTurn(false);
+        originalGoToPrevPage();
     }
 
     private void goToNextPage() {
-        if (flipPageMode && cacheInitialized) performCachedFlip(true);
-        else originalGoToNextPage();
+        if (!documentOpen) return;
+        prefetchScheduler.onTurn(true);
+        originalGoToNextPage();
     }
 
     private void originalGoToPrevPage() {
@@ -803,7 +1159,17 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updatePageNumberText() {
-        if (halfPageMode) {
+        if (doublePageMode) {
+            int basePage = currentPage;
+            if (basePage % 2 != 0) basePage--;
+            int rightPageNum = Math.min(basePage, totalPages - 1);
+            int leftPageNum = Math.min(basePage + 1, totalPages - 1);
+            if (leftPageNum < totalPages) {
+                bottomPageText.setText((leftPageNum + 1) + "," + (rightPageNum + 1) + "/" + totalPages);
+            } else {
+                bottomPageText.setText((leftPageNum + 1) + "/" + totalPages);
+            }
+        } else if (halfPageMode) {
             bottomPageText.setText((currentPage + 1) + "/" + totalPages + (leftPage ? " (左)" : " (右)"));
         } else {
             bottomPageText.setText((currentPage + 1) + "/" + totalPages);
@@ -824,7 +1190,7 @@ public class MainActivity extends AppCompatActivity {
                 if (pageNum >= 1 && pageNum <= totalPages) {
                     currentPage = pageNum - 1;
                     if (halfPageMode) leftPage = true;
-                    if (flipPageMode) clearPageCache();
+                    prefetchScheduler.reset();
                     displayCurrentPage();
                 } else {
                     Toast.makeText(this, "页面范围应为 1 - " + totalPages, Toast.LENGTH_SHORT).show();
@@ -838,252 +1204,370 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void displayCurrentPage() {
-        if (pdfRenderer == null) return;
+        if (!documentOpen) return;
         try {
-            if (doublePageMode) {
-                int basePage = currentPage;
-                if (basePage % 2 != 0) basePage--;
-                int rightPageNum = basePage;
-                int leftPageNum = basePage + 1;
-                if (rightPageNum >= totalPages) rightPageNum = totalPages - 1;
-                if (leftPageNum >= totalPages) leftPageNum = totalPages - 1;
-                showDoublePage(leftPageNum, rightPageNum);
+            PageBitmapCache.Key key = keyForPosition(currentPage, leftPage);
+            Bitmap cached = pageCache.get(key);
+            if (cached != null) {
+                renderEngine.cancel(TAG_DISPLAY);
+                showPageBitmap(key, cached);
             } else {
-                renderSinglePage();
+                // 只有未放大的显示页写磁盘缓存；预载和放大档位的键下次未必再用到。
+                // 指纹算出之前的键下次打开不会再用（那时直接按指纹查），也不写
+                boolean persist = scaleFactor <= 1.01f && currentSource.fingerprint != null;
+                renderEngine.submit(TAG_DISPLAY, PageRenderEngine.PRIORITY_DISPLAY, buildRenderJob(key, persist),
+                        new PageRenderEngine.Callback() {
+                            @Override
+                            public void onRendered(Bitmap bitmap) {
+                                pageCache.put(key, bitmap);
+                                showPageBitmap(key, bitmap);
+                            }
+
+                            @Override
+                            public void onFailed(Exception e) {
+                                Toast.makeText(MainActivity.this, "渲染页面失败", Toast.LENGTH_SHORT).show();
+                            }
+                        });
             }
             saveReadingPosition();
+            prefetchNeighbours();
         } catch (Exception e) {
             Toast.makeText(this, "显示页面失败", Toast.LENGTH_SHORT).show();
         }
     }
 
-    // 单页渲染：直接使用原始分辨率
-    private void renderSinglePage() {
-        try {
-            PdfRenderer.Page page = pdfRenderer.openPage(currentPage);
-            int pw = page.getWidth(), ph = page.getHeight();
-            Bitmap bitmap = Bitmap.createBitmap(pw, ph, Bitmap.Config.ARGB_8888);
-            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-            page.close();
-            if (halfPageMode) {
-                int halfW = pw / 2;
-                if (leftPage) {
-                    bitmap = Bitmap.createBitmap(bitmap, 0, 0, halfW, ph);
-                } else {
-                    bitmap = Bitmap.createBitmap(bitmap, halfW, 0, halfW, ph);
-                }
-            }
-            if (nightMode) bitmap = invertColors(bitmap);
-            if (isRotated) bitmap = rotateBitmap90(bitmap);
-            pdfImageView.setImageBitmap(bitmap);
-            scaleFactor = 1.0f; matrix.reset();
-            updatePageNumberText();
-            pdfImageView.postDelayed(this::centerImage, 100);
-            if (flipPageMode && !cacheInitialized) pdfImageView.postDelayed(this::initPageCache, 300);
-        } catch (Exception e) {
-            Toast.makeText(this, "渲染页面失败", Toast.LENGTH_SHORT).show();
-        }
+    private void showPageBitmap(PageBitmapCache.Key key, Bitmap bitmap) {
+        pdfImageView.setImageBitmap(bitmap);
+        pageCache.markDisplayed(bitmap);
+        displayedKey = key;
+        displayedSignature = snapshotSignature(currentSource, currentPage, leftPage);
+        StartupTrace.firstPage(this, "render");
+        clearZoomTiles();
+        scaleFactor = 1.0f; matrix.reset();
+        updatePageNumberText();
+        pdfImageView.invalidate();
+        pdfImageView.postDelayed(this::centerImage, 100);
     }
 
-    // 双页渲染优化：原始尺寸 + Canvas 直接缩放绘制
-    private void showDoublePage(int leftPageNum, int rightPageNum) {
-        try {
+    // 由当前阅读设置生成某一位置的缓存键；双页模式下按偶数页对齐成一组
+    private PageBitmapCache.Key keyForPosition(int page, boolean left) {
+        int rotation = isRotated ? 90 : 0;
+        if (doublePageMode) {
+            int basePage = page;
+            if (basePage % 2 != 0) basePage--;
+            int rightPageNum = Math.min(basePage, totalPages - 1);
+            int leftPageNum = Math.min(basePage + 1, totalPages - 1);
             int screenW = getResources().getDisplayMetrics().widthPixels;
             int screenH = getResources().getDisplayMetrics().heightPixels;
             if (isRotated) { int t = screenW; screenW = screenH; screenH = t; }
-
-            Bitmap doubleBitmap = Bitmap.createBitmap(screenW, screenH, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(doubleBitmap);
-            canvas.drawColor(getBackgroundColor());
-
-            int lw = 0, lh = 0, rw = 0, rh = 0;
-            if (leftPageNum < totalPages) {
-                PdfRenderer.Page lp = pdfRenderer.openPage(leftPageNum);
-                lw = lp.getWidth(); lh = lp.getHeight();
-                lp.close();
-            }
-            if (rightPageNum < totalPages) {
-                PdfRenderer.Page rp = pdfRenderer.openPage(rightPageNum);
-                rw = rp.getWidth(); rh = rp.getHeight();
-                rp.close();
-            }
-            int maxH = Math.max(lh, rh);
-            float scaleH = (float) (screenH * 0.95) / maxH;
-            int totalW = lw + rw;
-            float scaleW = (float) (screenW * 0.95) / totalW;
-            float scale = Math.min(scaleH, scaleW);
-            int drawH = (int) (maxH * scale);
-            int leftDrawW = (int) (lw * scale);
-            int rightDrawW = (int) (rw * scale);
-            int totalDrawW = leftDrawW + rightDrawW;
-            int startX = (screenW - totalDrawW) / 2;
-            int startY = (screenH - drawH) / 2;
-
-            if (leftPageNum < totalPages && lw > 0 && lh > 0) {
-                PdfRenderer.Page page = pdfRenderer.openPage(leftPageNum);
-                Bitmap orig = Bitmap.createBitmap(lw, lh, Bitmap.Config.ARGB_8888);
-                page.render(orig, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-                page.close();
-                if (nightMode) orig = invertColors(orig);
-                canvas.drawBitmap(orig,
-                        new Rect(0, 0, lw, lh),
-                        new Rect(startX, startY, startX + leftDrawW, startY + drawH), null);
-                orig.recycle();
-            }
-            if (rightPageNum < totalPages && rw > 0 && rh > 0) {
-                PdfRenderer.Page page = pdfRenderer.openPage(rightPageNum);
-                Bitmap orig = Bitmap.createBitmap(rw, rh, Bitmap.Config.ARGB_8888);
-                page.render(orig, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-                page.close();
-                if (nightMode) orig = invertColors(orig);
-                canvas.drawBitmap(orig,
-                        new Rect(0, 0, rw, rh),
-                        new Rect(startX + leftDrawW, startY, startX + totalDrawW, startY + drawH), null);
-                orig.recycle();
+            return new PageBitmapCache.Key(currentSource.cacheId(), leftPageNum, rightPageNum,
+                    PageBitmapCache.HALF_NONE, rotation, screenW, screenH);
+        }
+        int half = !halfPageMode ? PageBitmapCache.HALF_NONE
+                : (left ? PageBitmapCache.HALF_LEFT : PageBitmapCache.HALF_RIGHT);
+        // 目标分辨率 = 显示区域 × 当前缩放档位（按 0.5 取整，避免缓存键过碎）
+        int[] box = RenderResolution.viewBox(pdfImageView, getResources().getDisplayMetrics());
+        float zoom = scaleFactor > 1.01f
+                ? Math.min(RenderResolution.MAX_PAGE_ZOOM, (float) Math.ceil(scaleFactor * 2) / 2f) : 1f;
+        return new PageBitmapCache.Key(currentSource.cacheId(), page, -1, half, rotation,
+                Math.round(box[0] * zoom), Math.round(box[1] * zoom));
+    }
+
+    // 渲染任务只依赖缓存键，不读取 Activity 的可变状态，可以安全地在渲染线程执行
+    // 先查磁盘缓存，未命中再交给 PdfRenderer；persist 时新渲染的结果画进一张池里的位图异步写盘，
+    // 写完还回池里，不再每次新分配整屏副本
+    private PageRenderEngine.RenderJob buildRenderJob(PageBitmapCache.Key key, boolean persist) {
+        return renderer -> {
+            Bitmap bitmap = diskPageCache.read(key);
+            if (bitmap != null) return bitmap;
+            bitmap = key.isSpread() ? renderDoublePage(renderer, key) : renderSinglePage(renderer, key);
+            if (persist) {
+                Bitmap snapshot = bitmapPool.get(bitmap.getWidth(), bitmap.getHeight());
+                new Canvas(snapshot).drawBitmap(bitmap, 0, 0, null);
+                diskPageCache.writeAsync(key, snapshot);
             }
+            return bitmap;
+        };
+    }
 
-            if (isRotated) doubleBitmap = rotateBitmap90(doubleBitmap);
-            pdfImageView.setImageBitmap(doubleBitmap);
-            if (leftPageNum < totalPages) {
-                bottomPageText.setText((leftPageNum + 1) + "," + (rightPageNum + 1) + "/" + totalPages);
-            } else {
-                bottomPageText.setText((leftPageNum + 1) + "/" + totalPages);
+    // 单页渲染：按显示区域分辨率渲染；半页模式只渲染需要的那一半，不再整页渲染后裁切。
+    // 旋转直接并入渲染矩阵，位图按旋转后的尺寸分配，不再另做一张旋转副本
+    private Bitmap renderSinglePage(PdfRenderer renderer, PageBitmapCache.Key key) {
+        PdfRenderer.Page page = renderer.openPage(key.page);
+        try {
+            int pw = page.getWidth(), ph = page.getHeight();
+            float contentW = key.half != PageBitmapCache.HALF_NONE ? pw / 2f : pw;
+            float scale = RenderResolution.pageScale(contentW, ph, key.targetW, key.targetH, key.rotation != 0, 1f);
+            int w = RenderResolution.scaled(contentW, scale), h = RenderResolution.scaled(ph, scale);
+            Bitmap bitmap = key.rotation != 0 ? bitmapPool.get(h, w) : bitmapPool.get(w, h);
+            try {
+                page.render(bitmap, null, pageToBaseMatrix(key, pw, ph), PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            } catch (RuntimeException e) {
+                bitmapPool.put(bitmap);
+                throw e;
             }
-            pdfImageView.invalidate();
-            pdfImageView.postDelayed(this::centerImage, 100);
-        } catch (Exception e) {
-            e.printStackTrace();
+            return bitmap;
+        } finally {
+            // 渲染出错也必须关页，否则这个 renderer 之后的 openPage 全部失败
+            page.close();
         }
     }
 
-    // ==================== 图像处理工具 ====================
-    private Bitmap invertColors(Bitmap bitmap) {
-        if (bitmap == null) return null;
-        Bitmap out = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(out);
-        ColorMatrix cm = new ColorMatrix(new float[]{
-                -1, 0, 0, 0, 255,
-                0, -1, 0, 0, 255,
-                0, 0, -1, 0, 255,
-                0, 0, 0, 1, 0
-        });
-        Paint paint = new Paint();
-        paint.setColorFilter(new ColorMatrixColorFilter(cm));
-        canvas.drawBitmap(bitmap, 0, 0, paint);
-        return out;
+    // 双页渲染：两页按各自的目标矩形直接渲染进整屏拼版位图
+    private Bitmap renderDoublePage(PdfRenderer renderer, PageBitmapCache.Key key) {
+        int leftPageNum = key.page, rightPageNum = key.secondPage;
+        int screenW = key.targetW, screenH = key.targetH;
+        int pageCount = renderer.getPageCount();
+
+        // 旋转时画布直接按旋转后的尺寸分配，版面仍按未旋转坐标排，由 toBitmap 转过去
+        Bitmap doubleBitmap = key.rotation != 0 ? bitmapPool.get(screenH, screenW) : bitmapPool.get(screenW, screenH);
+        // 页边留透明，露出阅读区背景：夜间反色滤镜下也是 NIGHT_MODE_BG，切换日夜不必重新渲染
+        doubleBitmap.eraseColor(Color.TRANSPARENT);
+        Matrix toBitmap = new Matrix();
+        if (key.rotation != 0) {
+            toBitmap.postRotate(90);
+            toBitmap.postTranslate(screenH, 0);
+        }
+
+        // 页面尺寸由渲染引擎记住，排版不再为量尺寸多开一次页面
+        int[] left = leftPageNum < pageCount ? renderEngine.pageSize(renderer, leftPageNum) : new int[]{0, 0};
+        int[] right = rightPageNum < pageCount ? renderEngine.pageSize(renderer, rightPageNum) : new int[]{0, 0};
+        int lw = left[0], lh = left[1], rw = right[0], rh = right[1];
+        int maxH = Math.max(lh, rh);
+        float scaleH = (float) (screenH * 0.95) / maxH;
+        int totalW = lw + rw;
+        float scaleW = (float) (screenW * 0.95) / totalW;
+        float scale = Math.min(scaleH, scaleW);
+        int drawH = (int) (maxH * scale);
+        int leftDrawW = (int) (lw * scale);
+        int rightDrawW = (int) (rw * scale);
+        int totalDrawW = leftDrawW + rightDrawW;
+        int startX = (screenW - totalDrawW) / 2;
+        int startY = (screenH - drawH) / 2;
+
+        try {
+            if (leftPageNum < pageCount && lw > 0 && lh > 0) {
+                renderPageInto(renderer, leftPageNum, doubleBitmap, lw, lh,
+                        new RectF(startX, startY, startX + leftDrawW, startY + drawH), toBitmap);
+            }
+            if (rightPageNum < pageCount && rw > 0 && rh > 0) {
+                renderPageInto(renderer, rightPageNum, doubleBitmap, rw, rh,
+                        new RectF(startX + leftDrawW, startY, startX + totalDrawW, startY + drawH), toBitmap);
+            }
+        } catch (RuntimeException e) {
+            bitmapPool.put(doubleBitmap);
+            throw e;
+        }
+        return doubleBitmap;
     }
 
-    private Bitmap rotateBitmap90(Bitmap bitmap) {
-        if (bitmap == null) return null;
+    // 把一页按目标矩形的缩放和平移直接渲染进拼版位图，不经过整页临时位图；
+    // 裁剪区限定在目标矩形内，另一页已渲染的内容不会被覆盖
+    private void renderPageInto(PdfRenderer renderer, int index, Bitmap dest, int pw, int ph,
+                                RectF dst, Matrix toBitmap) {
         Matrix m = new Matrix();
-        m.postRotate(90);
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), m, true);
-    }
-
-    // ==================== 缓存与翻页效果 ====================
-    private void initPageCache() {
-        if (pdfRenderer == null) return;
-        clearPageCache();
-        int prev = Math.max(0, currentPage - 1);
-        int next = Math.min(totalPages - 1, currentPage + 1);
-        cachePage(prev, true);
-        cachePage(currentPage, false);
-        cachePage(next, true);
-        cachedPrevPage = prev;
-        cachedCurrentPage = currentPage;
-        cachedNextPage = next;
-        cacheInitialized = true;
-    }
-
-    private void cachePage(int index, boolean isAdjacent) {
-        if (index < 0 || index >= totalPages) return;
+        m.postScale(Math.max(1f, dst.width()) / pw, Math.max(1f, dst.height()) / ph);
+        m.postTranslate(dst.left, dst.top);
+        m.postConcat(toBitmap);
+        RectF mapped = new RectF(dst);
+        toBitmap.mapRect(mapped);
+        Rect clip = new Rect();
+        mapped.round(clip);
+        if (!clip.intersect(0, 0, dest.getWidth(), dest.getHeight())) return;
+        PdfRenderer.Page page = renderer.openPage(index);
         try {
-            PdfRenderer.Page page = pdfRenderer.openPage(index);
-            int w = page.getWidth(), h = page.getHeight();
-            float scale = Math.min(400f / w, 600f / h);
-            int sw = (int) (w * scale), sh = (int) (h * scale);
-            Bitmap bmp = Bitmap.createBitmap(sw, sh, Bitmap.Config.ARGB_8888);
-            page.render(bmp, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            page.render(dest, clip, m, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        } finally {
             page.close();
-            if (nightMode) bmp = invertColors(bmp);
-            if (isRotated) bmp = rotateBitmap90(bmp);
-            if (index == currentPage) currentPageCache = bmp;
-            else if (index == currentPage - 1) prevPageCache = bmp;
-            else if (index == currentPage + 1) nextPageCache = bmp;
-        } catch (Exception e) { /* ignore */ }
+        }
+    }
+
+    // ==================== 缓存与预载 ====================
+    // 按学到的阅读方向和节奏预载后续位置到页面缓存，翻页时直接命中；
+    // 预载模式下看得更远，但总量不超过页面缓存能容纳的页数
+    private void prefetchNeighbours() {
+        if (!documentOpen) return;
+        PageBitmapCache.Key current = keyForPosition(currentPage, leftPage);
+        int pageBytes = Math.max(1, current.targetW * current.targetH * 4);
+        int affordable = pageCache.maxBytes() / pageBytes - 2;
+        int maxDepth = Math.min(flipPageMode ? PREFETCH_SLOTS - 1 : 2, affordable);
+        List<int[]> plan = prefetchScheduler.plan(currentPage, leftPage, maxDepth, this::stepPosition);
+        for (int i = 0; i < PREFETCH_SLOTS; i++) {
+            // 离当前页越近优先级越高
+            prefetchPosition(TAG_PREFETCH_PREFIX + i, PageRenderEngine.PRIORITY_PREFETCH + i,
+                    i < plan.size() ? plan.get(i) : null);
+        }
+    }
+
+    private void prefetchPosition(String tag, int priority, int[] position) {
+        if (position == null) { renderEngine.cancel(tag); return; }
+        PageBitmapCache.Key key = keyForPosition(position[0], position[1] == 1);
+        if (pageCache.contains(key)) { renderEngine.cancel(tag); return; }
+        renderEngine.submit(tag, priority, buildRenderJob(key, false),
+                new PageRenderEngine.Callback() {
+                    @Override
+                    public void onRendered(Bitmap bitmap) { pageCache.put(key, bitmap); }
+
+                    @Override
+                    public void onFailed(Exception e) { /* ignore */ }
+                });
     }
 
-    private void clearPageCache() {
-        if (prevPageCache != null) { prevPageCache.recycle(); prevPageCache = null; }
-        if (currentPageCache != null) { currentPageCache.recycle(); currentPageCache = null; }
-        if (nextPageCache != null) { nextPageCache.recycle(); nextPageCache = null; }
-        cachedPrevPage = -1; cachedCurrentPage = -1; cachedNextPage = -1;
-        cacheInitialized = false;
-    }
-
-    private void updatePageCacheAfterFlip(boolean forward) {
-        if (!cacheInitialized || !flipPageMode) return;
-        if (forward) {
-            if (prevPageCache != null) { prevPageCache.recycle(); prevPageCache = null; }
-            prevPageCache = currentPageCache;
-            currentPageCache = nextPageCache;
-            nextPageCache = null;
-            cachedPrevPage = cachedCurrentPage;
-            cachedCurrentPage = cachedNextPage;
-            int newNext = Math.min(totalPages - 1, currentPage + 1);
-            if (newNext != cachedCurrentPage && newNext < totalPages) {
-                cachePage(newNext, true);
-                cachedNextPage = newNext;
+    private void cancelPrefetch() {
+        if (renderEngine == null) return;
+        for (int i = 0; i < PREFETCH_SLOTS; i++) renderEngine.cancel(TAG_PREFETCH_PREFIX + i);
+    }
+
+    // 与 originalGoToNextPage/originalGoToPrevPage 相同的翻页规则，返回 {页码, 左半页?1:0}，到头返回 null
+    private int[] stepPosition(int page, boolean left, boolean forward) {
+        if (doublePageMode) {
+            if (forward) return page < totalPages - 1 ? new int[]{Math.min(page + 2, totalPages - 1), 0} : null;
+            return page > 0 ? new int[]{Math.max(page - 2, 0), 0} : null;
+        }
+        if (halfPageMode) {
+            if (forward) {
+                if (!left) return new int[]{page, 1};
+                return page < totalPages - 1 ? new int[]{page + 1, 0} : null;
             }
-        } else {
-            if (nextPageCache != null) { nextPageCache.recycle(); nextPageCache = null; }
-            nextPageCache = currentPageCache;
-            currentPageCache = prevPageCache;
-            prevPageCache = null;
-            cachedNextPage = cachedCurrentPage;
-            cachedCurrentPage = cachedPrevPage;
-            int newPrev = Math.max(0, currentPage - 1);
-            if (newPrev != cachedCurrentPage && newPrev >= 0) {
-                cachePage(newPrev, true);
-                cachedPrevPage = newPrev;
+            if (left) return new int[]{page, 0};
+            return page > 0 ? new int[]{page - 1, 1} : null;
+        }
+        if (forward) return page < totalPages - 1 ? new int[]{page + 1, 0} : null;
+        return page > 0 ? new int[]{page - 1, 0} : null;
+    }
+
+    // ==================== 深度缩放图块 ====================
+    private void scheduleZoomTiles() {
+        if (pdfImageView == null) return;
+        pdfImageView.removeCallbacks(tileRequest);
+        pdfImageView.postDelayed(tileRequest, TILE_SETTLE_DELAY);
+    }
+
+    // 缩放停稳后，只为可见区域按屏幕分辨率重渲染图块，叠加在低分辨率底图上
+    private void requestZoomTiles() {
+        if (!documentOpen || displayedKey == null || displayedKey.isSpread() || tileOverlay == null) return;
+        BitmapDrawable drawable = (BitmapDrawable) pdfImageView.getDrawable();
+        if (drawable == null || drawable.getBitmap() == null) return;
+        // 空白页放大也看不出细节，不用渲染图块（标记由后台建立元数据时检测并存盘）
+        if (documentMetadata != null && documentMetadata.isBlank(displayedKey.page)) return;
+        int baseW = drawable.getBitmap().getWidth(), baseH = drawable.getBitmap().getHeight();
+        float[] values = new float[9];
+        matrix.getValues(values);
+        float onScreen = values[Matrix.MSCALE_X];
+        cancelZoomTiles();
+        if (onScreen <= TILE_MIN_ZOOM) {
+            tileOverlay.clearTiles();
+            tileLevel = 0;
+            return;
+        }
+        int level = 2;
+        while (level < onScreen && level < TILE_MAX_LEVEL) level *= 2;
+        if (level != tileLevel) {
+            tileOverlay.clearTiles();
+            tileLevel = level;
+        }
+
+        Matrix inverse = new Matrix();
+        if (!matrix.invert(inverse)) return;
+        RectF visible = new RectF(0, 0, pdfImageView.getWidth(), pdfImageView.getHeight());
+        inverse.mapRect(visible);
+        if (!visible.intersect(0, 0, baseW, baseH)) return;
+
+        float tileBase = (float) TileCache.TILE_SIZE / level;
+        int tx0 = (int) (visible.left / tileBase), tx1 = (int) Math.ceil(visible.right / tileBase);
+        int ty0 = (int) (visible.top / tileBase), ty1 = (int) Math.ceil(visible.bottom / tileBase);
+        final PageBitmapCache.Key pageKey = displayedKey;
+        Set<TileCache.Key> visibleTiles = new HashSet<>();
+        for (int ty = ty0; ty < ty1; ty++) {
+            for (int tx = tx0; tx < tx1; tx++) visibleTiles.add(new TileCache.Key(pageKey, level, tx, ty));
+        }
+        tileOverlay.retainTiles(visibleTiles);
+        for (int ty = ty0; ty < ty1; ty++) {
+            for (int tx = tx0; tx < tx1; tx++) {
+                TileCache.Key tileKey = new TileCache.Key(pageKey, level, tx, ty);
+                RectF dst = new RectF(tx * tileBase, ty * tileBase,
+                        Math.min((tx + 1) * tileBase, baseW), Math.min((ty + 1) * tileBase, baseH));
+                if (tileOverlay.hasTile(tileKey)) continue;
+                Bitmap cached = tileCache.get(tileKey);
+                if (cached != null) {
+                    tileOverlay.addTile(tileKey, cached, dst);
+                    continue;
+                }
+                int tileW = Math.max(1, Math.min(TileCache.TILE_SIZE, (int) Math.ceil(dst.width() * level)));
+                int tileH = Math.max(1, Math.min(TileCache.TILE_SIZE, (int) Math.ceil(dst.height() * level)));
+                String tag = TAG_TILE_PREFIX + (tileTagSeq++);
+                pendingTileTags.add(tag);
+                renderEngine.submit(tag, PageRenderEngine.PRIORITY_DISPLAY,
+                        renderer -> renderTile(renderer, tileKey, tileW, tileH),
+                        new PageRenderEngine.Callback() {
+                            @Override
+                            public void onRendered(Bitmap bitmap) {
+                                pendingTileTags.remove(tag);
+                                renderEngine.forget(tag);
+                                tileCache.put(tileKey, bitmap);
+                                if (pageKey.equals(displayedKey) && tileKey.level == tileLevel) {
+                                    tileOverlay.addTile(tileKey, bitmap, dst);
+                                }
+                            }
+
+                            @Override
+                            public void onFailed(Exception e) {
+                                pendingTileTags.remove(tag);
+                                renderEngine.forget(tag);
+                            }
+                        });
             }
         }
-        if (currentPageCache != null) pdfImageView.setImageBitmap(currentPageCache);
     }
 
-    private void performCachedFlip(boolean forward) {
-        if (isFlipping) return;
-        if (forward) {
-            if (currentPage >= totalPages - 1) return;
-        } else {
-            if (currentPage <= 0) return;
+    // 图块 = 页面到底图的映射，再放大 level 倍并平移到图块原点
+    private Bitmap renderTile(PdfRenderer renderer, TileCache.Key tile, int tileW, int tileH) {
+        PdfRenderer.Page page = renderer.openPage(tile.page.page);
+        try {
+            Matrix m = pageToBaseMatrix(tile.page, page.getWidth(), page.getHeight());
+            m.postScale(tile.level, tile.level);
+            m.postTranslate(-tile.tx * TileCache.TILE_SIZE, -tile.ty * TileCache.TILE_SIZE);
+            Bitmap bitmap = bitmapPool.get(tileW, tileH);
+            try {
+                page.render(bitmap, null, m, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            } catch (RuntimeException e) {
+                bitmapPool.put(bitmap);
+                throw e;
+            }
+            return bitmap;
+        } finally {
+            page.close();
         }
-        isFlipping = true;
-        if (forward && nextPageCache != null) {
-            pdfImageView.setImageBitmap(nextPageCache);
-            currentPage++;
-            if (halfPageMode) leftPage = true;
-            updatePageNumberText();
-            new android.os.Handler().postDelayed(() -> {
-                updatePageCacheAfterFlip(true);
-                saveReadingPosition();
-                isFlipping = false;
-            }, 50);
-        } else if (!forward && prevPageCache != null) {
-            pdfImageView.setImageBitmap(prevPageCache);
-            currentPage--;
-            if (halfPageMode) leftPage = false;
-            updatePageNumberText();
-            new android.os.Handler().postDelayed(() -> {
-                updatePageCacheAfterFlip(false);
-                saveReadingPosition();
-                isFlipping = false;
-            }, 50);
-        } else {
-            if (forward) originalGoToNextPage();
-            else originalGoToPrevPage();
-            isFlipping = false;
+    }
+
+    // 与 renderSinglePage 得到的底图一致的 页面→底图 映射（含旋转）
+    private Matrix pageToBaseMatrix(PageBitmapCache.Key key, int pw, int ph) {
+        float contentW = key.half != PageBitmapCache.HALF_NONE ? pw / 2f : pw;
+        float offsetX = key.half == PageBitmapCache.HALF_RIGHT ? pw / 2f : 0f;
+        float scale = RenderResolution.pageScale(contentW, ph, key.targetW, key.targetH, key.rotation != 0, 1f);
+        Matrix m = RenderResolution.pageMatrix(scale, offsetX);
+        if (key.rotation != 0) {
+            m.postRotate(90);
+            m.postTranslate(RenderResolution.scaled(ph, scale), 0);
         }
+        return m;
+    }
+
+    private void cancelZoomTiles() {
+        if (renderEngine != null) for (String tag : pendingTileTags) renderEngine.forget(tag);
+        pendingTileTags.clear();
+    }
+
+    private void clearZoomTiles() {
+        if (pdfImageView != null) pdfImageView.removeCallbacks(tileRequest);
+        cancelZoomTiles();
+        tileLevel = 0;
+        if (tileOverlay != null) tileOverlay.clearTiles();
+    }
+
+    private void applyImageMatrix() {
+        pdfImageView.setImageMatrix(matrix);
+        if (tileOverlay != null) tileOverlay.setImageMatrix(matrix);
     }
 
     // ==================== 触摸与缩放 ====================
@@ -1115,9 +1599,10 @@ public class MainActivity extends AppCompatActivity {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_POINTER_UP:
                 mode = NONE;
+                scheduleZoomTiles();
                 break;
         }
-        view.setImageMatrix(matrix);
+        applyImageMatrix();
         return true;
     }
 
@@ -1145,7 +1630,7 @@ public class MainActivity extends AppCompatActivity {
             float dy = event.getY() - startPoint.y;
             matrix.postTranslate(dx, dy);
             limitDragWithBoundary();
-            view.setImageMatrix(matrix);
+            applyImageMatrix();
             return true;
         }
         float dx = Math.abs(event.getX() - touchStartX);
@@ -1160,6 +1645,7 @@ public class MainActivity extends AppCompatActivity {
     private boolean handleTouchUp(ImageView view, MotionEvent event) {
         if (scaleFactor > 1.01f && mode == DRAG) {
             mode = NONE;
+            scheduleZoomTiles();
             return true;
         }
         float endX = event.getX(), endY = event.getY();
@@ -1255,7 +1741,7 @@ public class MainActivity extends AppCompatActivity {
         values[Matrix.MTRANS_Y] = dy;
         matrix.setValues(values);
         limitDragWithBoundary();
-        pdfImageView.setImageMatrix(matrix);
+        applyImageMatrix();
     }
 
     private void resetScale() {
@@ -1267,49 +1753,70 @@ public class MainActivity extends AppCompatActivity {
 
     private void toggleControls() {
         controlsVisible = !controlsVisible;
-        View topBar = readerContainer.getChildAt(1);
+        View topBar = readerTopBar;
         if (topBar != null) topBar.setVisibility(controlsVisible ? View.VISIBLE : View.GONE);
         bottomBar.setVisibility(controlsVisible ? View.VISIBLE : View.GONE);
     }
 
+    // 夜间模式和色调都只换视图滤镜，不重新渲染
     private void toggleNightMode() {
         nightMode = !nightMode;
         saveSettings();
         updateThemeColors();
-        if (flipPageMode && cacheInitialized) clearPageCache();
-        if (pdfRenderer != null) displayCurrentPage();
+        if (readerContainer != null) readerContainer.setBackgroundColor(getBackgroundColor());
+        applyPageTone();
+    }
+
+    private void cyclePageTone() {
+        if (nightMode) toggleNightMode();
+        else {
+            pageTone = PageTone.nextDayTone(pageTone);
+            saveSettings();
+            applyPageTone();
+        }
+        Toast.makeText(this, "色调: " + PageTone.name(pageTone), Toast.LENGTH_SHORT).show();
+    }
+
+    private ColorFilter currentToneFilter() {
+        return PageTone.filter(nightMode ? PageTone.NIGHT : pageTone);
+    }
+
+    private void applyPageTone() {
+        ColorFilter filter = currentToneFilter();
+        if (pdfImageView != null) pdfImageView.setColorFilter(filter);
+        if (tileOverlay != null) tileOverlay.setColorFilter(filter);
     }
 
     private void toggleHalfPageMode() {
         halfPageMode = !halfPageMode;
         if (halfPageBtn != null) halfPageBtn.setText(halfPageMode ? "整页" : "半页");
         saveSettings();
-        if (flipPageMode) clearPageCache();
-        if (pdfRenderer != null) displayCurrentPage();
+        cancelPrefetch();
+        if (documentOpen) displayCurrentPage();
     }
 
     private void toggleDoublePageMode() {
         doublePageMode = !doublePageMode;
         if (pageModeBtn != null) pageModeBtn.setText(doublePageMode ? "单页" : "双页");
         saveSettings();
-        if (flipPageMode) clearPageCache();
-        if (pdfRenderer != null) displayCurrentPage();
+        cancelPrefetch();
+        if (documentOpen) displayCurrentPage();
     }
 
     private void toggleRotation() {
         isRotated = !isRotated;
         if (rotateBtn != null) rotateBtn.setText(isRotated ? "转回" : "旋转");
         saveSettings();
-        if (flipPageMode) clearPageCache();
-        if (pdfRenderer != null) displayCurrentPage();
+        cancelPrefetch();
+        if (documentOpen) displayCurrentPage();
     }
 
     private void toggleFlipPageMode() {
         flipPageMode = !flipPageMode;
         if (flipModeBtn != null) flipModeBtn.setText(flipPageMode ? "平滑" : "预载");
         saveSettings();
-        if (!flipPageMode) clearPageCache();
-        else if (pdfRenderer != null && !cacheInitialized) initPageCache();
+        cancelPrefetch();
+        if (documentOpen) prefetchNeighbours();
     }
 
     private void goBackToFileList() {
@@ -1322,8 +1829,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void closePdf() {
-        if (pdfRenderer != null) { pdfRenderer.close(); pdfRenderer = null; }
-        if (fileDescriptor != null) { try { fileDescriptor.close(); } catch (IOException e) {} }
+        hideThumbnailGrid();
+        thumbnailProvider.close();
+        metadataIndex.cancel();
+        documentMetadata = null;
+        metadataLoaded = false;
+        if (renderEngine != null) renderEngine.closeDocument();
+        documentOpen = false;
+        documentOpening = false;
     }
 
     @Override
@@ -1348,9 +1861,26 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            pageCache.clear();
+            bitmapPool.clear();
+            tileCache.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            tileCache.clear();
+            pageCache.trimTo(0.5f);
+            bitmapPool.clear();
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         closePdf();
+        if (renderEngine != null) { renderEngine.release(); renderEngine = null; }
+        thumbnailProvider.release();
+        progressStore.close();
     }
 }
@@ -0,0 +1,153 @@
+package com.pdf.reader;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * 页面位图 LRU 缓存，按字节数限额。
+ * 键包含文件、页码、半页侧、旋转和目标分辨率（色调在显示时套用，不进键），
+ * 切换模式后再切回来、或回到刚看过的页面都可以直接命中。
+ * 被淘汰的位图交还 BitmapPool 复用；正在显示的那张要等换下后才归还。
+ */
+public class PageBitmapCache {
+
+    public static final int HALF_NONE = 0;
+    public static final int HALF_RIGHT = 1;
+    public static final int HALF_LEFT = 2;
+
+    private static final int MIN_BUDGET = 16 * 1024 * 1024;
+
+    private final LruCache<Key, Bitmap> cache;
+    private final BitmapPool pool;
+    private Bitmap displayed;
+    private boolean displayedEvicted = false;
+
+    public PageBitmapCache(Context context, BitmapPool pool) {
+        this(budgetFor(context), pool);
+    }
+
+    public PageBitmapCache(int maxBytes, BitmapPool pool) {
+        this.pool = pool;
+        cache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue == newValue) return;
+                release(oldValue);
+            }
+        };
+    }
+
+    /** 取应用可用堆的 1/4 作为页面缓存预算 */
+    public static int budgetFor(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = am != null ? am.getMemoryClass() : 64;
+        return Math.max(MIN_BUDGET, memoryClassMb * 1024 * 1024 / 4);
+    }
+
+    public Bitmap get(Key key) {
+        Bitmap bmp = cache.get(key);
+        if (bmp != null && bmp.isRecycled()) {
+            cache.remove(key);
+            return null;
+        }
+        return bmp;
+    }
+
+    public void put(Key key, Bitmap bitmap) {
+        if (key == null || bitmap == null || bitmap.isRecycled()) return;
+        cache.put(key, bitmap);
+    }
+
+    /** 记录当前显示的位图；换下来的那张若已不在缓存中则归还位图池 */
+    public synchronized void markDisplayed(Bitmap bitmap) {
+        Bitmap previous = displayed;
+        boolean previousEvicted = displayedEvicted;
+        displayed = bitmap;
+        displayedEvicted = false;
+        if (previous != null && previous != bitmap && previousEvicted && pool != null) pool.put(previous);
+    }
+
+    private synchronized void release(Bitmap bitmap) {
+        if (bitmap == displayed) {
+            displayedEvicted = true;
+        } else if (pool != null) {
+            pool.put(bitmap);
+        }
+    }
+
+    public boolean contains(Key key) {
+        return get(key) != null;
+    }
+
+    public int maxBytes() {
+        return cache.maxSize();
+    }
+
+    /** 内存紧张时收缩到原预算的一部分 */
+    public void trimTo(float fraction) {
+        cache.trimToSize((int) (cache.maxSize() * fraction));
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /** 页面缓存键。双页模式下 secondPage 为同屏另一页，否则为 -1 */
+    public static final class Key {
+        public final String file;
+        public final int page;
+        public final int secondPage;
+        public final int half;
+        public final int rotation;
+        public final int targetW, targetH;
+
+        public Key(String file, int page, int secondPage, int half,
+                   int rotation, int targetW, int targetH) {
+            this.file = file;
+            this.page = page;
+            this.secondPage = secondPage;
+            this.half = half;
+            this.rotation = rotation;
+            this.targetW = targetW;
+            this.targetH = targetH;
+        }
+
+        public boolean isSpread() { return secondPage >= 0; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return page == k.page && secondPage == k.secondPage && half == k.half
+                    && rotation == k.rotation
+                    && targetW == k.targetW && targetH == k.targetH
+                    && (file == null ? k.file == null : file.equals(k.file));
+        }
+
+        @Override
+        public int hashCode() {
+            int h = file != null ? file.hashCode() : 0;
+            h = 31 * h + page;
+            h = 31 * h + secondPage;
+            h = 31 * h + half;
+            h = 31 * h + rotation;
+            h = 31 * h + targetW;
+            h = 31 * h + targetH;
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return page + (isSpread() ? "+" + secondPage : "") + "/h" + half
+                    + "/r" + rotation + "/" + targetW + "x" + targetH;
+        }
+    }
+}
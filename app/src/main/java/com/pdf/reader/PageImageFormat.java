@@ -0,0 +1,314 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 天朗页面缓存的中间格式。PNG 的 deflate 是大幅扫描页导入导出的主要开销，这里另给几种选择：
+ * WebP 无损（低压缩力度，Android 11 起才有真正的无损接口，更早的系统退回 PNG）、
+ * 24 位 BMP 加最快档 deflate、8 位灰度 BMP 加最快档 deflate（黑白古籍扫描只有原来的三分之一数据量）。
+ * 两种 BMP 以 .bmpz 存盘，网页取图时由 WebViewClient 拦截后边解压边交给浏览器，浏览器自己就能显示 BMP。
+ * 自动模式逐页判断：单色页存灰度，彩色页存 24 位。
+ */
+public final class PageImageFormat {
+
+    public static final int PNG = 0;
+    public static final int WEBP_LOSSLESS = 1;
+    public static final int RGB_FAST = 2;
+    public static final int GRAY8 = 3;
+    public static final int AUTO = 4;
+
+    private static final String[] NAMES = {"png", "webp", "fast", "gray", "auto"};
+    private static final String[] LABELS = {"PNG", "WebP无损", "快速RGB", "8位灰度", "自动"};
+    private static final String BMPZ = ".bmpz";
+    private static final String[] SUFFIXES = {".png", ".webp", BMPZ};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // WebP 无损的压缩力度，越低越快、文件略大
+    private static final int WEBP_EFFORT = 10;
+    // 单色判定：抽样像素中色差超过阈值的不超过这个比例
+    private static final int MONO_CHANNEL_DIFF = 24;
+    private static final float MONO_MAX_COLORED = 0.01f;
+
+    private PageImageFormat() {}
+
+    public static int parse(String name) {
+        for (int i = 0; i < NAMES.length; i++) if (NAMES[i].equals(name)) return i;
+        return AUTO;
+    }
+
+    public static String name(int format) {
+        return format >= 0 && format < NAMES.length ? NAMES[format] : NAMES[AUTO];
+    }
+
+    /** 本机实际使用的格式：没有 WEBP_LOSSLESS 的系统上旧 WEBP 接口不保证无损，改存 PNG */
+    public static int supported(int format) {
+        return format == WEBP_LOSSLESS && Build.VERSION.SDK_INT < Build.VERSION_CODES.R ? PNG : format;
+    }
+
+    /** 这些格式不保存透明度，渲染前要先铺白底 */
+    public static boolean isOpaque(int format) {
+        return format == RGB_FAST || format == GRAY8 || format == AUTO;
+    }
+
+    public static boolean isDeflatedBmp(String path) {
+        return path != null && path.endsWith(BMPZ);
+    }
+
+    /** 按格式写出 dir/baseName.<后缀>，返回写好的文件；先写临时文件再改名 */
+    public static File write(Bitmap bitmap, int format, File dir, String baseName) throws IOException {
+        if (format == AUTO) format = isMonochrome(bitmap) ? GRAY8 : RGB_FAST;
+        format = supported(format);
+        File file = new File(dir, baseName + suffix(format));
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE)) {
+            encode(bitmap, format, out);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("无法保存 " + file.getName());
+        }
+        return file;
+    }
+
+    /** 找到 baseName 对应的页面文件，不论以哪种格式存的 */
+    public static File find(File dir, String baseName) {
+        for (String suffix : SUFFIXES) {
+            File f = new File(dir, baseName + suffix);
+            if (f.exists()) return f;
+        }
+        return null;
+    }
+
+    public static Bitmap decode(File file) throws IOException {
+        if (!isDeflatedBmp(file.getName())) return BitmapFactory.decodeFile(file.getAbsolutePath());
+        try (InputStream in = open(file)) {
+            return BitmapFactory.decodeStream(in);
+        }
+    }
+
+    /**
+     * 只解码 region 这一块（会先裁到图片范围内），导出时不必把整页读进内存。
+     * PNG / WebP 用 BitmapRegionDecoder；.bmpz 是未压缩的行数据，跳过上方的行、只取需要的列
+     */
+    public static Bitmap decodeRegion(File file, Rect region) throws IOException {
+        if (!isDeflatedBmp(file.getName())) {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(file.getAbsolutePath(), false);
+            try {
+                Rect r = new Rect(region);
+                if (!r.intersect(0, 0, decoder.getWidth(), decoder.getHeight())) throw new IOException("裁切区域为空");
+                return decoder.decodeRegion(r, null);
+            } finally {
+                decoder.recycle();
+            }
+        }
+        try (DataInputStream in = new DataInputStream(open(file))) {
+            byte[] header = new byte[54];
+            in.readFully(header);
+            int dataOffset = getInt(header, 10), w = getInt(header, 18), h = getInt(header, 22);
+            int bytesPerPixel = (header[28] & 0xFF) / 8;
+            // 这里只读自己写出的自上而下 BMP
+            if (header[0] != 'B' || header[1] != 'M' || h >= 0 || (bytesPerPixel != 1 && bytesPerPixel != 3)) {
+                throw new IOException("不支持的页面文件");
+            }
+            h = -h;
+            Rect r = new Rect(region);
+            if (!r.intersect(0, 0, w, h)) throw new IOException("裁切区域为空");
+            int stride = (w * bytesPerPixel + 3) & ~3;
+            skipFully(in, dataOffset - header.length + (long) r.top * stride);
+
+            int rw = r.width(), rh = r.height();
+            Bitmap out = Bitmap.createBitmap(rw, rh, Bitmap.Config.ARGB_8888);
+            byte[] row = new byte[stride];
+            int[] pixels = new int[rw];
+            for (int y = 0; y < rh; y++) {
+                in.readFully(row);
+                if (bytesPerPixel == 1) {
+                    for (int x = 0; x < rw; x++) {
+                        int v = row[r.left + x] & 0xFF;
+                        pixels[x] = 0xFF000000 | (v << 16) | (v << 8) | v;
+                    }
+                } else {
+                    for (int x = 0, p = r.left * 3; x < rw; x++, p += 3) {
+                        pixels[x] = 0xFF000000 | ((row[p + 2] & 0xFF) << 16) | ((row[p + 1] & 0xFF) << 8) | (row[p] & 0xFF);
+                    }
+                }
+                out.setPixels(pixels, 0, rw, 0, y, rw, 1);
+            }
+            return out;
+        }
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | b[offset + 3] << 24;
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) throw new EOFException();
+            n -= skipped;
+        }
+    }
+
+    /** .bmpz 解压后就是完整的 BMP 文件，可以直接交给浏览器或 BitmapFactory */
+    public static InputStream open(File file) throws IOException {
+        InputStream raw = new FileInputStream(file);
+        if (!isDeflatedBmp(file.getName())) return new BufferedInputStream(raw, BUFFER_SIZE);
+        return new InflaterInputStream(new BufferedInputStream(raw, BUFFER_SIZE));
+    }
+
+    private static String suffix(int format) {
+        switch (format) {
+            case PNG: return ".png";
+            case WEBP_LOSSLESS: return ".webp";
+            default: return BMPZ;
+        }
+    }
+
+    private static void encode(Bitmap bitmap, int format, OutputStream out) throws IOException {
+        switch (format) {
+            case PNG:
+                if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) throw new IOException("压缩失败");
+                break;
+            case WEBP_LOSSLESS:
+                // 只在 R 及以上走到这里，见 supported()
+                if (!bitmap.compress(Bitmap.CompressFormat.WEBP_LOSSLESS, WEBP_EFFORT, out)) throw new IOException("压缩失败");
+                break;
+            default: {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    DeflaterOutputStream z = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+                    writeBmp(bitmap, format == GRAY8, z);
+                    z.finish();
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+    }
+
+    // 自上而下的 BMP（高度取负），行数据按 4 字节对齐；灰度用 256 级灰阶调色板
+    private static void writeBmp(Bitmap bitmap, boolean gray, OutputStream out) throws IOException {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        int bytesPerPixel = gray ? 1 : 3;
+        int stride = (w * bytesPerPixel + 3) & ~3;
+        int paletteSize = gray ? 256 * 4 : 0;
+        int dataOffset = 14 + 40 + paletteSize;
+        byte[] header = new byte[dataOffset];
+        header[0] = 'B'; header[1] = 'M';
+        putInt(header, 2, dataOffset + stride * h);
+        putInt(header, 10, dataOffset);
+        putInt(header, 14, 40);
+        putInt(header, 18, w);
+        putInt(header, 22, -h);
+        header[26] = 1;
+        header[28] = (byte) (bytesPerPixel * 8);
+        putInt(header, 34, stride * h);
+        if (gray) {
+            putInt(header, 46, 256);
+            for (int i = 0; i < 256; i++) {
+                int p = 54 + i * 4;
+                header[p] = header[p + 1] = header[p + 2] = (byte) i;
+            }
+        }
+        out.write(header);
+
+        int[] pixels = new int[w];
+        byte[] row = new byte[stride];
+        for (int y = 0; y < h; y++) {
+            bitmap.getPixels(pixels, 0, w, 0, y, w, 1);
+            if (gray) {
+                for (int x = 0; x < w; x++) row[x] = (byte) luma(pixels[x]);
+            } else {
+                for (int x = 0, p = 0; x < w; x++, p += 3) {
+                    int c = pixels[x];
+                    row[p] = (byte) c;
+                    row[p + 1] = (byte) (c >> 8);
+                    row[p + 2] = (byte) (c >> 16);
+                }
+            }
+            out.write(row);
+        }
+    }
+
+    private static void putInt(byte[] b, int offset, int v) {
+        b[offset] = (byte) v;
+        b[offset + 1] = (byte) (v >> 8);
+        b[offset + 2] = (byte) (v >> 16);
+        b[offset + 3] = (byte) (v >> 24);
+    }
+
+    static int luma(int c) {
+        return (Color.red(c) * 77 + Color.green(c) * 150 + Color.blue(c) * 29) >> 8;
+    }
+
+    /** 抽样判断是否单色（黑白或灰度扫描） */
+    public static boolean isMonochrome(Bitmap bitmap) {
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        int stepX = Math.max(1, w / 64), stepY = Math.max(1, h / 64);
+        int total = 0, colored = 0;
+        for (int y = 0; y < h; y += stepY) {
+            for (int x = 0; x < w; x += stepX) {
+                int c = bitmap.getPixel(x, y);
+                int r = Color.red(c), g = Color.green(c), b = Color.blue(c);
+                int diff = Math.max(Math.abs(r - g), Math.max(Math.abs(g - b), Math.abs(r - b)));
+                if (diff > MONO_CHANNEL_DIFF) colored++;
+                total++;
+            }
+        }
+        return total > 0 && colored <= total * MONO_MAX_COLORED;
+    }
+
+    /** 用一张页面对比各格式的编码、解码耗时和文件大小，返回可读的报告 */
+    public static String benchmark(Bitmap sample, File dir) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%d×%d，%s\n", sample.getWidth(), sample.getHeight(),
+                isMonochrome(sample) ? "单色页" : "彩色页"));
+        sb.append("格式 / 编码 / 解码 / 大小\n");
+        for (int format = PNG; format <= GRAY8; format++) {
+            if (supported(format) != format) {
+                sb.append(LABELS[format]).append("：本机不支持，按").append(LABELS[supported(format)]).append("保存\n");
+                continue;
+            }
+            File file = null;
+            try {
+                long t0 = SystemClock.elapsedRealtime();
+                file = write(sample, format, dir, "format_bench");
+                long t1 = SystemClock.elapsedRealtime();
+                Bitmap decoded = decode(file);
+                long t2 = SystemClock.elapsedRealtime();
+                if (decoded != null) decoded.recycle();
+                sb.append(String.format(Locale.US, "%s：%dms / %dms / %dKB\n",
+                        LABELS[format], t1 - t0, t2 - t1, file.length() / 1024));
+            } catch (IOException | RuntimeException e) {
+                sb.append(LABELS[format]).append("：失败 ").append(e.getMessage()).append('\n');
+            } finally {
+                if (file != null) file.delete();
+            }
+        }
+        return sb.toString();
+    }
+}
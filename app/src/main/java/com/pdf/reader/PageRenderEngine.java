@@ -0,0 +1,306 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 页面渲染引擎：由单一工作线程独占 PdfRenderer（PdfRenderer 非线程安全），
+ * 主线程只负责提交请求和接收结果。
+ * 同一 tag 的新请求会使旧请求作废，快速翻页时过期的渲染直接丢弃（位图归还位图池）。
+ */
+public class PageRenderEngine {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String TAG_OPEN = "open";
+
+    public static final int PRIORITY_CONTROL = -1;
+    public static final int PRIORITY_DISPLAY = 0;
+    public static final int PRIORITY_PREFETCH = 10;
+
+    /** 在渲染线程上执行，可以自由使用 renderer */
+    public interface RenderJob {
+        Bitmap render(PdfRenderer renderer) throws Exception;
+    }
+
+    /** 在渲染线程上打开文件描述符 */
+    public interface DescriptorOpener {
+        ParcelFileDescriptor open() throws IOException;
+    }
+
+    /** 在主线程回调 */
+    public interface OpenCallback {
+        void onOpened(int pageCount);
+        void onFailed(Exception e);
+    }
+
+    /** 在主线程回调 */
+    public interface Callback {
+        void onRendered(Bitmap bitmap);
+        void onFailed(Exception e);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final Map<String, Long> generations = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread worker;
+    private final BitmapPool bitmapPool;
+    private final int threadPriority;
+    private volatile boolean released = false;
+
+    // 以下字段只在渲染线程上访问
+    private PdfRenderer renderer;
+    private ParcelFileDescriptor fileDescriptor;
+    private final SparseArray<int[]> pageSizes = new SparseArray<>();
+
+    public PageRenderEngine(BitmapPool bitmapPool) {
+        this(bitmapPool, "PageRenderEngine", Process.THREAD_PRIORITY_DEFAULT);
+    }
+
+    /** threadPriority 为 android.os.Process 的线程优先级，缩略图等后台渲染用低优先级 */
+    public PageRenderEngine(BitmapPool bitmapPool, String threadName, int threadPriority) {
+        this.bitmapPool = bitmapPool;
+        this.threadPriority = threadPriority;
+        worker = new Thread(this::loop, threadName);
+        worker.start();
+    }
+
+    // ==================== 文档管理 ====================
+
+    /**
+     * 在渲染线程上打开文档，主线程不再因构造 PdfRenderer 而卡顿。
+     * 打开之后提交的渲染请求排在它后面执行；再次打开或关闭会使尚未送达的回调作废。
+     */
+    public void openDocument(DescriptorOpener opener, OpenCallback callback) {
+        cancelAll();
+        long generation = nextGeneration(TAG_OPEN);
+        enqueueControl(() -> {
+            closeCurrent();
+            ParcelFileDescriptor fd = null;
+            try {
+                fd = opener.open();
+                renderer = new PdfRenderer(fd);
+                fileDescriptor = fd;
+                int pageCount = renderer.getPageCount();
+                mainHandler.post(() -> {
+                    if (isCurrent(TAG_OPEN, generation)) callback.onOpened(pageCount);
+                });
+            } catch (Exception e) {
+                if (fd != null) {
+                    try { fd.close(); } catch (IOException ignored) { }
+                }
+                mainHandler.post(() -> {
+                    if (isCurrent(TAG_OPEN, generation)) callback.onFailed(e);
+                });
+            }
+        });
+    }
+
+    public void closeDocument() {
+        cancelAll();
+        enqueueControl(this::closeCurrent);
+    }
+
+    /** 关闭文档并结束渲染线程 */
+    public void release() {
+        cancelAll();
+        enqueueControl(() -> {
+            closeCurrent();
+            released = true;
+        });
+    }
+
+    private void closeCurrent() {
+        pageSizes.clear();
+        if (renderer != null) {
+            // 有页面没关时 close() 会抛 IllegalStateException，不能让它带走渲染线程
+            try { renderer.close(); } catch (RuntimeException e) { Log.e(TAG, "关闭 PdfRenderer 失败", e); }
+            renderer = null;
+        }
+        if (fileDescriptor != null) {
+            try { fileDescriptor.close(); } catch (IOException e) { /* ignore */ }
+            fileDescriptor = null;
+        }
+    }
+
+    /**
+     * 页面原始尺寸 {宽, 高}，打开一次后记住，排版时不必为了量尺寸反复 openPage。
+     * 只能在渲染任务里调用；不能在已有页面打开时调用
+     */
+    public int[] pageSize(PdfRenderer renderer, int index) {
+        int[] size = pageSizes.get(index);
+        if (size == null) {
+            PdfRenderer.Page page = renderer.openPage(index);
+            try {
+                size = new int[]{page.getWidth(), page.getHeight()};
+            } finally {
+                page.close();
+            }
+            pageSizes.put(index, size);
+        }
+        return size;
+    }
+
+    /** 用已保存的文档元数据预先填好页面尺寸；页数对不上（已换了文档）时忽略 */
+    public void primePageSizes(int[] widths, int[] heights) {
+        enqueueControl(() -> {
+            if (renderer == null || renderer.getPageCount() != widths.length) return;
+            for (int i = 0; i < widths.length; i++) pageSizes.put(i, new int[]{widths[i], heights[i]});
+        });
+    }
+
+    // ==================== 请求提交与取消 ====================
+
+    /** 提交渲染请求；同 tag 下未完成的旧请求随之作废 */
+    public void submit(String tag, int priority, RenderJob job, Callback callback) {
+        long generation = nextGeneration(tag);
+        queue.put(new Task(tag, generation, priority, sequence.incrementAndGet(), job, callback, null));
+    }
+
+    private long nextGeneration(String tag) {
+        synchronized (generations) {
+            Long old = generations.get(tag);
+            long generation = old == null ? 1 : old + 1;
+            generations.put(tag, generation);
+            return generation;
+        }
+    }
+
+    private boolean isCurrent(String tag, long generation) {
+        synchronized (generations) {
+            Long current = generations.get(tag);
+            return current != null && current == generation;
+        }
+    }
+
+    public void cancel(String tag) {
+        synchronized (generations) {
+            Long old = generations.get(tag);
+            if (old != null) generations.put(tag, old + 1);
+        }
+    }
+
+    /** 作废并忘掉 tag：一次性的 tag（如图块）用完就调，代次表不会越积越大 */
+    public void forget(String tag) {
+        synchronized (generations) {
+            generations.remove(tag);
+        }
+    }
+
+    public void cancelAll() {
+        synchronized (generations) {
+            for (Map.Entry<String, Long> e : generations.entrySet()) e.setValue(e.getValue() + 1);
+        }
+    }
+
+    private boolean isStale(Task task) {
+        return task.tag != null && !isCurrent(task.tag, task.generation);
+    }
+
+    private void enqueueControl(Runnable action) {
+        queue.put(new Task(null, 0, PRIORITY_CONTROL, sequence.incrementAndGet(), null, null, action));
+    }
+
+    // ==================== 渲染线程 ====================
+
+    private void loop() {
+        Process.setThreadPriority(threadPriority);
+        while (!released) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (task.control != null) {
+                try {
+                    task.control.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "渲染线程控制任务异常", e);
+                }
+                continue;
+            }
+            if (isStale(task)) continue;
+            if (renderer == null) {
+                deliverFailure(task, new IllegalStateException("文档未打开"));
+                continue;
+            }
+            Bitmap result;
+            try {
+                result = task.job.render(renderer);
+            } catch (Exception e) {
+                deliverFailure(task, e);
+                continue;
+            }
+            deliverResult(task, result);
+        }
+        queue.clear();
+    }
+
+    private void deliverResult(Task task, Bitmap bitmap) {
+        if (isStale(task)) {
+            discard(bitmap);
+            return;
+        }
+        mainHandler.post(() -> {
+            // 结果送达主线程前也可能已被更新的请求取代
+            if (isStale(task)) {
+                discard(bitmap);
+                return;
+            }
+            task.callback.onRendered(bitmap);
+        });
+    }
+
+    private void discard(Bitmap bitmap) {
+        if (bitmap == null) return;
+        if (bitmapPool != null) bitmapPool.put(bitmap);
+        else bitmap.recycle();
+    }
+
+    private void deliverFailure(Task task, Exception e) {
+        if (isStale(task)) return;
+        mainHandler.post(() -> {
+            if (!isStale(task)) task.callback.onFailed(e);
+        });
+    }
+
+    private static class Task implements Comparable<Task> {
+        final String tag;
+        final long generation;
+        final int priority;
+        final long seq;
+        final RenderJob job;
+        final Callback callback;
+        final Runnable control;
+
+        Task(String tag, long generation, int priority, long seq,
+             RenderJob job, Callback callback, Runnable control) {
+            this.tag = tag;
+            this.generation = generation;
+            this.priority = priority;
+            this.seq = seq;
+            this.job = job;
+            this.callback = callback;
+            this.control = control;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (priority != o.priority) return Integer.compare(priority, o.priority);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.pdf.reader;
+
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+
+/**
+ * 页面色调预设。色调作为视图的颜色滤镜在绘制时生效，渲染出的位图始终是原色，
+ * 切换色调或夜间模式不需要重新渲染，也不再多占一张整页位图。
+ */
+public final class PageTone {
+
+    public static final int NORMAL = 0;
+    public static final int SEPIA = 1;
+    public static final int PAPER = 2;
+    public static final int NIGHT = 3;
+
+    private static final String[] NAMES = {"原色", "护眼", "纸张", "夜间"};
+
+    private PageTone() {}
+
+    public static String name(int tone) {
+        return tone >= 0 && tone < NAMES.length ? NAMES[tone] : NAMES[NORMAL];
+    }
+
+    /** 日间色调循环切换，夜间由夜间模式单独控制 */
+    public static int nextDayTone(int tone) {
+        return (tone + 1) % NIGHT;
+    }
+
+    /** 对应的颜色滤镜；原色返回 null */
+    public static ColorMatrixColorFilter filter(int tone) {
+        switch (tone) {
+            case NIGHT:
+                // 与原先 invertColors 相同的反色
+                return new ColorMatrixColorFilter(new ColorMatrix(new float[]{
+                        -1, 0, 0, 0, 255,
+                        0, -1, 0, 0, 255,
+                        0, 0, -1, 0, 255,
+                        0, 0, 0, 1, 0
+                }));
+            case SEPIA:
+                return new ColorMatrixColorFilter(new ColorMatrix(new float[]{
+                        0.393f, 0.769f, 0.189f, 0, 0,
+                        0.349f, 0.686f, 0.168f, 0, 0,
+                        0.272f, 0.534f, 0.131f, 0, 0,
+                        0, 0, 0, 1, 0
+                }));
+            case PAPER:
+                // 白底压成米黄纸色，墨色略微加深
+                return new ColorMatrixColorFilter(new ColorMatrix(new float[]{
+                        1.02f, 0, 0, 0, -6,
+                        0, 0.98f, 0, 0, -8,
+                        0, 0, 0.90f, 0, -10,
+                        0, 0, 0, 1, 0
+                }));
+            default:
+                return null;
+        }
+    }
+}
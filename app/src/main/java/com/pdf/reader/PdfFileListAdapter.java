@@ -0,0 +1,108 @@
+package com.pdf.reader;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件列表适配器：文件行由 RecyclerView 回收复用，几千本书也只创建一屏左右的行视图。
+ * 列表头（继续阅读、扫描提示）和列表尾（选择文件等按钮）作为固定行放在同一个列表里一起滚动。
+ * 行的样式和点击行为由 RowBinder 决定，适配器只管数据和复用。
+ */
+public class PdfFileListAdapter extends RecyclerView.Adapter<PdfFileListAdapter.Holder> {
+
+    private static final int TYPE_FILE = 0;
+    private static final int TYPE_STATIC = 1;
+
+    public interface RowBinder {
+        View createRow(ViewGroup parent);
+        void bindRow(View row, File file);
+    }
+
+    private final RowBinder binder;
+    private final List<View> header = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+    private final List<View> footer = new ArrayList<>();
+
+    public PdfFileListAdapter(RowBinder binder) {
+        this.binder = binder;
+    }
+
+    public void setHeader(List<View> views) {
+        header.clear();
+        header.addAll(views);
+        notifyDataSetChanged();
+    }
+
+    public void setFooter(List<View> views) {
+        footer.clear();
+        footer.addAll(views);
+        notifyDataSetChanged();
+    }
+
+    public void setFiles(List<File> newFiles) {
+        files.clear();
+        files.addAll(newFiles);
+        notifyDataSetChanged();
+    }
+
+    /** 追加一批文件，只通知新增的区间 */
+    public void addFiles(List<File> more) {
+        if (more.isEmpty()) return;
+        int start = header.size() + files.size();
+        files.addAll(more);
+        notifyItemRangeInserted(start, more.size());
+    }
+
+    /** 文件行的附加信息（如阅读进度）查好后重新绑定文件行 */
+    public void refreshFiles() {
+        notifyItemRangeChanged(header.size(), files.size());
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return position >= header.size() && position < header.size() + files.size() ? TYPE_FILE : TYPE_STATIC;
+    }
+
+    @Override
+    public int getItemCount() {
+        return header.size() + files.size() + footer.size();
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        if (viewType == TYPE_FILE) return new Holder(binder.createRow(parent));
+        FrameLayout host = new FrameLayout(parent.getContext());
+        host.setLayoutParams(new RecyclerView.LayoutParams(
+                RecyclerView.LayoutParams.MATCH_PARENT, RecyclerView.LayoutParams.WRAP_CONTENT));
+        return new Holder(host);
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        if (holder.getItemViewType() == TYPE_FILE) {
+            binder.bindRow(holder.itemView, files.get(position - header.size()));
+            return;
+        }
+        // 固定行：把对应的视图挂到这个宿主上（先从原来的宿主取下）
+        View view = position < header.size() ? header.get(position)
+                : footer.get(position - header.size() - files.size());
+        FrameLayout host = (FrameLayout) holder.itemView;
+        if (view.getParent() == host) return;
+        host.removeAllViews();
+        if (view.getParent() instanceof ViewGroup) ((ViewGroup) view.getParent()).removeView(view);
+        host.addView(view);
+    }
+
+    static class Holder extends RecyclerView.ViewHolder {
+        Holder(View itemView) {
+            super(itemView);
+        }
+    }
+}
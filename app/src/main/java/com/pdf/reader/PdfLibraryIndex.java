@@ -0,0 +1,326 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 持久化的 PDF 书库索引（路径、大小、修改时间、页数），保存在 files/library_index.json。
+ * 每个目录记下修改时间和子目录 / PDF 列表：目录修改时间没变就沿用记录，不再 listFiles 和逐项判断类型。
+ * 扫描先去掉互相包含的根目录，再把各根目录的一级子目录分给线程池并行遍历，
+ * 找到的文件分批送回主线程，不必等整盘走完。
+ */
+public class PdfLibraryIndex {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String FILE_NAME = "library_index.json";
+    private static final int VERSION = 1;
+    private static final long BATCH_INTERVAL_MS = 150;
+
+    /** 在主线程回调 */
+    public interface Listener {
+        void onFound(List<Entry> entries);
+        void onFinished(List<Entry> all);
+    }
+
+    public static final class Entry {
+        public final String path;
+        public final long size;
+        public final long mtime;
+        // 未知时为 0，文档第一次打开后补上
+        public final int pageCount;
+
+        Entry(String path, long size, long mtime, int pageCount) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.pageCount = pageCount;
+        }
+
+        public File file() { return new File(path); }
+    }
+
+    private static final class DirRecord {
+        final long mtime;
+        final String[] subdirs;
+        final String[] pdfs;
+
+        DirRecord(long mtime, String[] subdirs, String[] pdfs) {
+            this.mtime = mtime;
+            this.subdirs = subdirs;
+            this.pdfs = pdfs;
+        }
+    }
+
+    private final File indexFile;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, DirRecord> dirs = new ConcurrentHashMap<>();
+    private final Map<String, Entry> files = new ConcurrentHashMap<>();
+    private final AtomicInteger scanGeneration = new AtomicInteger();
+    private volatile boolean loaded = false;
+    private ExecutorService pool;
+
+    public PdfLibraryIndex(Context context) {
+        indexFile = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    // ==================== 扫描 ====================
+
+    /** 开始一次增量扫描；再次调用会作废上一次尚未送达的结果 */
+    public void scan(String[] roots, Listener listener) {
+        int generation = scanGeneration.incrementAndGet();
+        if (pool == null) {
+            int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "PdfLibraryIndex"));
+        }
+        new Thread(() -> runScan(generation, roots, listener), "PdfLibraryScan").start();
+    }
+
+    public void cancel() {
+        scanGeneration.incrementAndGet();
+    }
+
+    /** 文档打开后记录页数，下次列表可直接显示 */
+    public void recordPageCount(String path, int pageCount) {
+        Entry e = files.get(path);
+        if (e != null && e.pageCount != pageCount) {
+            files.put(path, new Entry(e.path, e.size, e.mtime, pageCount));
+            saveAsync();
+        }
+    }
+
+    public Entry get(String path) {
+        return files.get(path);
+    }
+
+    private void runScan(int generation, String[] roots, Listener listener) {
+        long start = System.currentTimeMillis();
+        if (!loaded) load();
+        // 已索引的文件先整批送出，界面立刻有内容
+        List<Entry> known = new ArrayList<>(files.values());
+        if (!known.isEmpty()) post(generation, () -> listener.onFound(known));
+
+        Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        Set<String> visitedDirs = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        List<Entry> batch = new ArrayList<>();
+        long[] lastFlush = {System.currentTimeMillis()};
+        Sink sink = entry -> {
+            if (!seen.add(entry.path)) return;
+            Entry previous = files.put(entry.path, entry);
+            if (previous != null && previous.size == entry.size && previous.mtime == entry.mtime) return;
+            List<Entry> toSend = null;
+            synchronized (batch) {
+                batch.add(entry);
+                long now = System.currentTimeMillis();
+                if (now - lastFlush[0] >= BATCH_INTERVAL_MS) {
+                    toSend = new ArrayList<>(batch);
+                    batch.clear();
+                    lastFlush[0] = now;
+                }
+            }
+            if (toSend != null) {
+                List<Entry> send = toSend;
+                post(generation, () -> listener.onFound(send));
+            }
+        };
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (File root : distinctRoots(roots)) {
+            // 根目录本身在当前线程展开一层，其子目录交给线程池
+            for (String sub : visit(root, visitedDirs, sink, generation)) {
+                File dir = new File(root, sub);
+                tasks.add(pool.submit(() -> walk(dir, visitedDirs, sink, generation)));
+            }
+        }
+        for (Future<?> f : tasks) {
+            try { f.get(); } catch (Exception e) { Log.e(TAG, "扫描错误: " + e.getMessage()); }
+        }
+        if (scanGeneration.get() != generation) return;
+
+        List<Entry> rest;
+        synchronized (batch) {
+            rest = new ArrayList<>(batch);
+            batch.clear();
+        }
+        if (!rest.isEmpty()) post(generation, () -> listener.onFound(rest));
+
+        // 这次没找到的文件和目录已被删除或移走，从索引中去掉
+        files.keySet().retainAll(seen);
+        dirs.keySet().retainAll(visitedDirs);
+        List<Entry> all = new ArrayList<>(files.values());
+        Collections.sort(all, (a, b) -> a.file().getName().compareToIgnoreCase(b.file().getName()));
+        Log.d(TAG, "书库扫描 " + all.size() + " 个文件，耗时 " + (System.currentTimeMillis() - start) + "ms");
+        save();
+        post(generation, () -> listener.onFinished(all));
+    }
+
+    private interface Sink {
+        void accept(Entry entry);
+    }
+
+    private void walk(File dir, Set<String> visitedDirs, Sink sink, int generation) {
+        for (String sub : visit(dir, visitedDirs, sink, generation)) {
+            walk(new File(dir, sub), visitedDirs, sink, generation);
+        }
+    }
+
+    // 处理一个目录中的 PDF，返回需要继续遍历的子目录名
+    private String[] visit(File dir, Set<String> visitedDirs, Sink sink, int generation) {
+        if (scanGeneration.get() != generation) return new String[0];
+        String path = dir.getPath();
+        if (!visitedDirs.add(path)) return new String[0];
+        long mtime = dir.lastModified();
+        if (mtime == 0) return new String[0];   // 不存在或无权访问
+        DirRecord record = dirs.get(path);
+        if (record == null || record.mtime != mtime) {
+            record = list(dir, mtime);
+            if (record == null) return new String[0];
+            dirs.put(path, record);
+        }
+        for (String name : record.pdfs) {
+            File f = new File(dir, name);
+            long size = f.length(), fileMtime = f.lastModified();
+            if (fileMtime == 0) continue;
+            Entry old = files.get(f.getPath());
+            int pages = old != null && old.size == size && old.mtime == fileMtime ? old.pageCount : 0;
+            sink.accept(new Entry(f.getPath(), size, fileMtime, pages));
+        }
+        return record.subdirs;
+    }
+
+    private static DirRecord list(File dir, long mtime) {
+        String[] names = dir.list();
+        if (names == null) return null;
+        List<String> subdirs = new ArrayList<>();
+        List<String> pdfs = new ArrayList<>();
+        for (String name : names) {
+            if (name.toLowerCase().endsWith(".pdf")) {
+                if (new File(dir, name).isFile()) pdfs.add(name);
+            } else if (!name.startsWith(".") && !name.equals("Android") && !name.equals("lost+found")
+                    && new File(dir, name).isDirectory()) {
+                subdirs.add(name);
+            }
+        }
+        return new DirRecord(mtime, subdirs.toArray(new String[0]), pdfs.toArray(new String[0]));
+    }
+
+    // 规范化根目录并去掉被其他根包含的那些（下载目录就在外部存储根下）
+    private static List<File> distinctRoots(String[] roots) {
+        List<String> canonical = new ArrayList<>();
+        for (String r : roots) {
+            if (r == null) continue;
+            try {
+                String c = new File(r).getCanonicalPath();
+                if (!canonical.contains(c)) canonical.add(c);
+            } catch (IOException ignored) { }
+        }
+        Collections.sort(canonical);
+        List<File> result = new ArrayList<>();
+        String last = null;
+        for (String c : canonical) {
+            if (last != null && (c.equals(last) || c.startsWith(last.endsWith("/") ? last : last + "/"))) continue;
+            result.add(new File(c));
+            last = c;
+        }
+        return result;
+    }
+
+    private void post(int generation, Runnable r) {
+        mainHandler.post(() -> {
+            if (scanGeneration.get() == generation) r.run();
+        });
+    }
+
+    // ==================== 持久化 ====================
+
+    private synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!indexFile.exists()) return;
+        try (InputStream in = new FileInputStream(indexFile)) {
+            byte[] buf = new byte[(int) indexFile.length()];
+            int n = 0;
+            while (n < buf.length) {
+                int r = in.read(buf, n, buf.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+            JSONObject root = new JSONObject(new String(buf, 0, n, StandardCharsets.UTF_8));
+            if (root.optInt("version") != VERSION) return;
+            JSONArray dirArray = root.optJSONArray("dirs");
+            for (int i = 0; dirArray != null && i < dirArray.length(); i++) {
+                JSONObject d = dirArray.getJSONObject(i);
+                dirs.put(d.getString("p"), new DirRecord(d.getLong("m"),
+                        toStrings(d.optJSONArray("d")), toStrings(d.optJSONArray("f"))));
+            }
+            JSONArray fileArray = root.optJSONArray("files");
+            for (int i = 0; fileArray != null && i < fileArray.length(); i++) {
+                JSONObject f = fileArray.getJSONObject(i);
+                String p = f.getString("p");
+                files.put(p, new Entry(p, f.getLong("s"), f.getLong("m"), f.optInt("n", 0)));
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "读取书库索引失败", e);
+            dirs.clear();
+            files.clear();
+        }
+    }
+
+    private void saveAsync() {
+        new Thread(this::save, "PdfLibraryIndexSave").start();
+    }
+
+    private synchronized void save() {
+        try {
+            JSONArray dirArray = new JSONArray();
+            for (Map.Entry<String, DirRecord> e : dirs.entrySet()) {
+                dirArray.put(new JSONObject().put("p", e.getKey()).put("m", e.getValue().mtime)
+                        .put("d", new JSONArray(Arrays.asList(e.getValue().subdirs)))
+                        .put("f", new JSONArray(Arrays.asList(e.getValue().pdfs))));
+            }
+            JSONArray fileArray = new JSONArray();
+            for (Entry e : files.values()) {
+                fileArray.put(new JSONObject().put("p", e.path).put("s", e.size).put("m", e.mtime).put("n", e.pageCount));
+            }
+            JSONObject root = new JSONObject().put("version", VERSION).put("dirs", dirArray).put("files", fileArray);
+            File tmp = new File(indexFile.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!tmp.renameTo(indexFile)) tmp.delete();
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "保存书库索引失败", e);
+        }
+    }
+
+    private static String[] toStrings(JSONArray array) throws JSONException {
+        if (array == null) return new String[0];
+        String[] out = new String[array.length()];
+        for (int i = 0; i < out.length; i++) out[i] = array.getString(i);
+        return out;
+    }
+}
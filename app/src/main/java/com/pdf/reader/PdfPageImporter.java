@@ -0,0 +1,239 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 天朗导入流水线：一个渲染线程独占 PdfRenderer 逐页渲染，渲染好的位图交给编码线程池并行压缩写盘。
+ * 同时在途的位图数有上限，渲染比编码快时渲染线程等一等，内存不会随页数增长。
+ * 写好的页面按页序分批送回主线程，第一页好了就能开始裁切，不用等整本渲染完。
+ * 每次导入写进页面目录下自己的子目录，取消后仍在收尾的编码线程只会写进旧目录，不会覆盖新书的页面。
+ * 存盘格式见 PageImageFormat。
+ */
+public class PdfPageImporter {
+
+    private static final String TAG = "TianLang";
+    // 限制长边最大尺寸，避免 OOM
+    private static final int MAX_DIM = 3000;
+    // 一页渲染结果最大约占这么多（MAX_DIM 见方的 ARGB_8888）；API 26 以前位图在 Java 堆上
+    private static final long PAGE_BYTES = (long) MAX_DIM * MAX_DIM * 4;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** 在主线程回调 */
+    public interface Listener {
+        void onStarted(int totalPages);
+        /** 新就绪的一批页面（按页序，已跳过无效页） */
+        void onPages(List<String> paths, int done, int totalPages);
+        void onFinished(int pageCount);
+        void onFailed(Exception e);
+    }
+
+    private final File root;
+    private final File dir;
+    // 目录名 <创建时间>_<序号>，用来分辨哪些目录比本次旧
+    private final long created;
+    private final long sequence;
+    private final int format;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int encoders;
+    private volatile boolean cancelled = false;
+
+    // 以下字段只在主线程访问：按页序放行，前面的页没好时后面的先攒着
+    private final TreeMap<Integer, String> completed = new TreeMap<>();
+    private int nextToDeliver = 0;
+    private int delivered = 0;
+
+    /** root 是页面目录，本次导入的页面放在它下面新的子目录里 */
+    public PdfPageImporter(File root, int format) {
+        this.root = root;
+        this.created = System.currentTimeMillis();
+        this.sequence = SEQUENCE.incrementAndGet();
+        this.dir = new File(root, created + "_" + sequence);
+        this.format = format;
+        this.encoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    public void start(PageRenderEngine.DescriptorOpener opener, Listener listener) {
+        new Thread(() -> run(opener, listener), "TianLangRender").start();
+    }
+
+    /** 本次导入的页面目录 */
+    public File dir() {
+        return dir;
+    }
+
+    /** 停止渲染；已提交的编码照常结束，但只写进本次的目录，结果也不再回调 */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** 删除整个目录树 */
+    public static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File f : children) deleteTree(f);
+        file.delete();
+    }
+
+    // 渲染线程
+    private void run(PageRenderEngine.DescriptorOpener opener, Listener listener) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+        ExecutorService pool = Executors.newFixedThreadPool(encoders, r -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "TianLangEncode"));
+        // 每个编码线程手上一张，再多一张在排队；但在途的整页位图总量不超过堆上限的四分之一
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        Semaphore inFlight = new Semaphore((int) Math.max(1, Math.min(encoders + 1, budget / PAGE_BYTES)));
+        try (ParcelFileDescriptor fd = opener.open();
+             PdfRenderer renderer = new PdfRenderer(fd)) {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建页面目录 " + dir);
+            int total = renderer.getPageCount();
+            post(() -> listener.onStarted(total));
+            if (total == 0) post(() -> listener.onFinished(0));
+            for (int i = 0; i < total && !cancelled; i++) {
+                inFlight.acquire();
+                Bitmap bitmap;
+                try {
+                    bitmap = renderPage(renderer, i, PageImageFormat.isOpaque(format));
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "渲染第" + (i + 1) + "页异常: " + e.getMessage());
+                    bitmap = null;
+                }
+                if (bitmap != null && !isBitmapValid(bitmap)) {
+                    Log.e(TAG, "第" + (i + 1) + "页渲染无效（可能JPEG2000），已跳过");
+                    bitmap.recycle();
+                    bitmap = null;
+                }
+                if (bitmap == null) {
+                    inFlight.release();
+                    complete(i, null, total, listener);
+                    continue;
+                }
+                final int index = i;
+                final Bitmap page = bitmap;
+                pool.execute(() -> {
+                    String path = null;
+                    try {
+                        path = encode(page, index);
+                    } finally {
+                        page.recycle();
+                        inFlight.release();
+                    }
+                    complete(index, path, total, listener);
+                });
+            }
+            // 新书已经打开并渲染完，网页早换成了新页面，这时才清掉更早导入的目录
+            // （含被取消的导入晚写完的页面）；打开失败时旧书的页面还留着可用
+            if (!cancelled) sweepOlder();
+            pool.shutdown();
+        } catch (Exception e) {
+            pool.shutdownNow();
+            if (!cancelled) post(() -> listener.onFailed(e));
+        }
+    }
+
+    private void sweepOlder() {
+        File[] old = root.listFiles();
+        if (old == null) return;
+        for (File f : old) if (!f.equals(dir) && isOlder(f.getName())) deleteTree(f);
+    }
+
+    // 之后才开始的导入（本次被取消后又换了书）的目录不能删
+    private boolean isOlder(String name) {
+        int sep = name.indexOf('_');
+        try {
+            long time = Long.parseLong(name.substring(0, sep));
+            long seq = Long.parseLong(name.substring(sep + 1));
+            return time < created || (time == created && seq < sequence);
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static Bitmap renderPage(PdfRenderer renderer, int index, boolean opaque) {
+        PdfRenderer.Page page = renderer.openPage(index);
+        try {
+            int w = page.getWidth(), h = page.getHeight();
+            float scale = Math.max(w, h) > MAX_DIM ? (float) MAX_DIM / Math.max(w, h) : 1.0f;
+            Bitmap bitmap = Bitmap.createBitmap(Math.round(w * scale), Math.round(h * scale), Bitmap.Config.ARGB_8888);
+            // 不存透明度的格式先铺白底，否则透明处会变成黑色
+            if (opaque) bitmap.eraseColor(Color.WHITE);
+            Matrix matrix = new Matrix();
+            matrix.postScale(scale, scale);
+            try {
+                page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            } catch (RuntimeException e) {
+                bitmap.recycle();
+                throw e;
+            }
+            return bitmap;
+        } finally {
+            // 坏页也要关掉，否则后面每一页的 openPage 都会失败
+            page.close();
+        }
+    }
+
+    // 编码线程：写成功即有效，不再解码回来校验
+    private String encode(Bitmap bitmap, int index) {
+        if (cancelled) return null;
+        try {
+            return PageImageFormat.write(bitmap, format, dir, "pdf_page_" + index).getAbsolutePath();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "第" + (index + 1) + "页写入失败，跳过", e);
+            return null;
+        }
+    }
+
+    private void complete(int index, String path, int total, Listener listener) {
+        post(() -> {
+            completed.put(index, path != null ? path : "");
+            List<String> ready = new ArrayList<>();
+            while (completed.containsKey(nextToDeliver)) {
+                String p = completed.remove(nextToDeliver++);
+                if (!p.isEmpty()) ready.add(p);
+            }
+            delivered += ready.size();
+            if (!ready.isEmpty() || nextToDeliver == total) listener.onPages(ready, nextToDeliver, total);
+            if (nextToDeliver == total) listener.onFinished(delivered);
+        });
+    }
+
+    private void post(Runnable r) {
+        mainHandler.post(() -> {
+            if (!cancelled) r.run();
+        });
+    }
+
+    // Bitmap 有效性简单检测：四角和中心颜色全都一样，多半是没渲染出来
+    private static boolean isBitmapValid(Bitmap bitmap) {
+        if (bitmap == null || bitmap.getWidth() < 5 || bitmap.getHeight() < 5) return false;
+        int[] colors = new int[5];
+        int w = bitmap.getWidth(), h = bitmap.getHeight();
+        colors[0] = bitmap.getPixel(0, 0);
+        colors[1] = bitmap.getPixel(w - 1, 0);
+        colors[2] = bitmap.getPixel(0, h - 1);
+        colors[3] = bitmap.getPixel(w - 1, h - 1);
+        colors[4] = bitmap.getPixel(w / 2, h / 2);
+        for (int i = 1; i < colors.length; i++) {
+            if (colors[i] != colors[0]) return true;
+        }
+        return false;
+    }
+}
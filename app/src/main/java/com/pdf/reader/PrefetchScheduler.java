@@ -0,0 +1,92 @@
+package com.pdf.reader;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预载调度：根据最近几次翻页学习阅读方向和翻页节奏，决定向前预载几步、向后预载几步。
+ * "一步"就是一次翻页，由调用方的 Stepper 按当前模式（单页 / 半页左右交替 / 双页隔两页）解释，
+ * 所以这里只关心方向和深度。翻得越快预载越深，回翻时保留一步给反方向。
+ */
+public class PrefetchScheduler {
+
+    /** 按当前阅读模式走一步，返回 {页码, 左半页?1:0}，到头返回 null */
+    public interface Stepper {
+        int[] step(int page, boolean left, boolean forward);
+    }
+
+    private static final int HISTORY = 6;
+    private static final long FAST_TURN_MS = 1000;
+    private static final long NORMAL_TURN_MS = 3000;
+    // 超过这么久没翻页，之前的节奏不再作数
+    private static final long IDLE_RESET_MS = 60_000;
+
+    private final ArrayDeque<long[]> turns = new ArrayDeque<>();
+
+    /** 记录一次用户翻页 */
+    public void onTurn(boolean forward) {
+        long now = SystemClock.uptimeMillis();
+        long[] last = turns.peekLast();
+        if (last != null && now - last[0] > IDLE_RESET_MS) turns.clear();
+        turns.addLast(new long[]{now, forward ? 1 : -1});
+        while (turns.size() > HISTORY) turns.pollFirst();
+    }
+
+    /** 跳页、换文档、切换模式后节奏重新学习 */
+    public void reset() {
+        turns.clear();
+    }
+
+    /** 主方向：近期翻页越新权重越大，没有历史时按向后阅读 */
+    public boolean forward() {
+        int score = 0, weight = 1;
+        for (long[] t : turns) score += t[1] * weight++;
+        return score >= 0;
+    }
+
+    /** 主方向上的预载步数，maxDepth 由调用方按缓存预算给出；预算连一页都放不下时不预载 */
+    public int depth(int maxDepth) {
+        if (maxDepth <= 0) return 0;
+        int depth;
+        long interval = medianInterval();
+        if (interval <= 0) depth = 1;
+        else if (interval < FAST_TURN_MS) depth = 4;
+        else if (interval < NORMAL_TURN_MS) depth = 3;
+        else depth = 2;
+        return Math.min(depth, maxDepth);
+    }
+
+    /** 依次列出要预载的位置：先主方向由近及远，最后是反方向一步 */
+    public List<int[]> plan(int page, boolean left, int maxDepth, Stepper stepper) {
+        List<int[]> positions = new ArrayList<>();
+        boolean forward = forward();
+        int[] pos = {page, left ? 1 : 0};
+        for (int i = 0, n = depth(maxDepth); i < n; i++) {
+            pos = stepper.step(pos[0], pos[1] == 1, forward);
+            if (pos == null) break;
+            positions.add(pos);
+        }
+        if (maxDepth > 1) {
+            int[] back = stepper.step(page, left, !forward);
+            if (back != null) positions.add(back);
+        }
+        return positions;
+    }
+
+    private long medianInterval() {
+        if (turns.size() < 2) return 0;
+        long[] intervals = new long[turns.size() - 1];
+        long prev = -1;
+        int i = 0;
+        for (long[] t : turns) {
+            if (prev >= 0) intervals[i++] = t[0] - prev;
+            prev = t[0];
+        }
+        Arrays.sort(intervals);
+        return intervals[intervals.length / 2];
+    }
+}
@@ -0,0 +1,194 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 阅读进度（页码、半页左右）存在独立的 SQLite 表里，每本书一行。
+ * 翻页只改内存，停下来一会儿才在后台线程写库，只写变了的那几行；
+ * 不再每翻一页就重写整个 SharedPreferences 文件，启动时也不用解析所有书的键。
+ * 第一次建表时把旧版存在 pdf_reader 里的 "<路径>_page" / "<路径>_half_page_left" 迁移过来。
+ */
+public class ReadingProgressStore {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String DB_NAME = "reading_progress.db";
+    private static final int DB_VERSION = 1;
+    private static final String LEGACY_PREFS = "pdf_reader";
+    private static final String LEGACY_PAGE = "_page";
+    private static final String LEGACY_LEFT = "_half_page_left";
+    private static final long WRITE_DELAY_MS = 1500;
+
+    public static final class Progress {
+        public final int page;
+        public final boolean left;
+
+        Progress(int page, boolean left) {
+            this.page = page;
+            this.left = left;
+        }
+    }
+
+    private final Helper helper;
+    private final HandlerThread thread;
+    private final Handler writer;
+    private final Map<String, Progress> memory = new HashMap<>();
+    private final Map<String, Progress> dirty = new HashMap<>();
+    private final Runnable writeTask = this::writeDirty;
+    private boolean loaded = false;
+
+    public ReadingProgressStore(Context context) {
+        helper = new Helper(context.getApplicationContext());
+        thread = new HandlerThread("ReadingProgress", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        writer = new Handler(thread.getLooper());
+        // 开库、建表迁移都在写库线程上先做掉，主线程第一次 get 时通常已经读好
+        writer.post(this::preload);
+    }
+
+    private synchronized void preload() {
+        ensureLoaded();
+    }
+
+    /** 没有记录时返回 null */
+    public synchronized Progress get(String id) {
+        ensureLoaded();
+        return memory.get(id);
+    }
+
+    /** 记下进度；真正写库推迟到翻页停下之后 */
+    public void put(String id, int page, boolean left) {
+        Progress progress = new Progress(page, left);
+        synchronized (this) {
+            ensureLoaded();
+            Progress old = memory.get(id);
+            if (old != null && old.page == page && old.left == left) return;
+            memory.put(id, progress);
+            dirty.put(id, progress);
+        }
+        writer.removeCallbacks(writeTask);
+        writer.postDelayed(writeTask, WRITE_DELAY_MS);
+    }
+
+    /** 离开界面时调用，立即把未写的进度写出 */
+    public void flush() {
+        writer.removeCallbacks(writeTask);
+        writer.post(writeTask);
+    }
+
+    /** Activity 销毁时调用：写出未写的进度后结束写库线程，之后不能再用 */
+    public void close() {
+        flush();
+        writer.post(helper::close);
+        // quitSafely 会先执行完已经到期的任务（写库、关库）再退出
+        thread.quitSafely();
+    }
+
+    // 表很小，第一次用到时整表读进内存
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        try (Cursor c = helper.getReadableDatabase().rawQuery("SELECT doc, page, left_half FROM progress", null)) {
+            while (c.moveToNext()) memory.put(c.getString(0), new Progress(c.getInt(1), c.getInt(2) != 0));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "读取阅读进度失败", e);
+        }
+    }
+
+    // 在写库线程上执行
+    private void writeDirty() {
+        List<Map.Entry<String, Progress>> pending;
+        synchronized (this) {
+            if (dirty.isEmpty()) return;
+            pending = new ArrayList<>(dirty.entrySet());
+            dirty.clear();
+        }
+        SQLiteDatabase db = null;
+        try {
+            db = helper.getWritableDatabase();
+            db.beginTransaction();
+            SQLiteStatement insert = db.compileStatement(
+                    "INSERT OR REPLACE INTO progress (doc, page, left_half, updated) VALUES (?, ?, ?, ?)");
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Progress> e : pending) {
+                insert.clearBindings();
+                insert.bindString(1, e.getKey());
+                insert.bindLong(2, e.getValue().page);
+                insert.bindLong(3, e.getValue().left ? 1 : 0);
+                insert.bindLong(4, now);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "保存阅读进度失败", e);
+        } finally {
+            if (db != null) db.endTransaction();
+        }
+    }
+
+    private static final class Helper extends SQLiteOpenHelper {
+        private final Context context;
+
+        Helper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+            this.context = context;
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE progress (doc TEXT PRIMARY KEY, page INTEGER NOT NULL, "
+                    + "left_half INTEGER NOT NULL, updated INTEGER NOT NULL)");
+            migrateLegacy(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            db.execSQL("DROP TABLE IF EXISTS progress");
+            onCreate(db);
+        }
+
+        // 旧版按文档把进度散存在设置文件里；搬进表后删掉，设置文件只剩真正的设置
+        private void migrateLegacy(SQLiteDatabase db) {
+            SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS, Context.MODE_PRIVATE);
+            Map<String, ?> all = prefs.getAll();
+            SharedPreferences.Editor editor = prefs.edit();
+            SQLiteStatement insert = db.compileStatement(
+                    "INSERT OR REPLACE INTO progress (doc, page, left_half, updated) VALUES (?, ?, ?, ?)");
+            long now = System.currentTimeMillis();
+            int migrated = 0;
+            for (Map.Entry<String, ?> e : all.entrySet()) {
+                String key = e.getKey();
+                if (!key.endsWith(LEGACY_PAGE) || !(e.getValue() instanceof Integer)) continue;
+                String id = key.substring(0, key.length() - LEGACY_PAGE.length());
+                // 只认文档路径和 URI，"half_page"、"double_page" 之类是设置项
+                if (!id.startsWith("/") && !DocumentSource.isUri(id)) continue;
+                Object left = all.get(id + LEGACY_LEFT);
+                insert.clearBindings();
+                insert.bindString(1, id);
+                insert.bindLong(2, (Integer) e.getValue());
+                insert.bindLong(3, left instanceof Integer && (Integer) left == 1 ? 1 : 0);
+                insert.bindLong(4, now);
+                insert.executeInsert();
+                editor.remove(key).remove(id + LEGACY_LEFT);
+                migrated++;
+            }
+            if (migrated > 0) {
+                editor.apply();
+                Log.d(TAG, "迁移阅读进度 " + migrated + " 条");
+            }
+        }
+    }
+}
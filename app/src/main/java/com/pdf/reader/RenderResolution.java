@@ -0,0 +1,56 @@
+package com.pdf.reader;
+
+import android.graphics.Matrix;
+import android.util.DisplayMetrics;
+import android.view.View;
+
+/**
+ * 渲染分辨率策略：按显示区域决定位图尺寸，而不是按 PDF 的点数尺寸。
+ * 小页面在高密度屏上不再发虚，超大扫描页也不会按原始尺寸占用内存。
+ */
+public final class RenderResolution {
+
+    // 长边上限，与 TianLangActivity 的 MAX_DIM 同理，同时不超过常见的纹理尺寸限制
+    public static final int MAX_DIM = 4096;
+    // 整页渲染最多放大到显示区域的这么多倍，更深的缩放由局部重渲染处理
+    public static final float MAX_PAGE_ZOOM = 2.0f;
+
+    private RenderResolution() {}
+
+    /** 显示区域尺寸（像素）；视图尚未布局时退回屏幕尺寸 */
+    public static int[] viewBox(View view, DisplayMetrics metrics) {
+        int w = view != null ? view.getWidth() : 0;
+        int h = view != null ? view.getHeight() : 0;
+        if (w <= 0 || h <= 0) {
+            w = metrics.widthPixels;
+            h = metrics.heightPixels;
+        }
+        return new int[]{w, h};
+    }
+
+    /**
+     * PDF 点到位图像素的缩放系数：先让内容恰好放进显示区域，再乘以当前缩放倍数，
+     * 最后受长边上限约束。rotated 为 true 时内容会旋转 90° 显示，区域宽高互换。
+     */
+    public static float pageScale(float contentW, float contentH, int boxW, int boxH,
+                                  boolean rotated, float zoom) {
+        if (rotated) { int t = boxW; boxW = boxH; boxH = t; }
+        float fit = Math.min(boxW / contentW, boxH / contentH);
+        float scale = fit * Math.max(1f, Math.min(zoom, MAX_PAGE_ZOOM));
+        float longest = Math.max(contentW, contentH) * scale;
+        if (longest > MAX_DIM) scale *= MAX_DIM / longest;
+        return scale;
+    }
+
+    /** 把 PDF 页面中 [offsetX, offsetX + 内容宽) 的部分按 scale 映射到位图左上角 */
+    public static Matrix pageMatrix(float scale, float offsetX) {
+        Matrix m = new Matrix();
+        m.postTranslate(-offsetX, 0);
+        m.postScale(scale, scale);
+        return m;
+    }
+
+    public static int scaled(float size, float scale) {
+        return Math.max(1, Math.round(size * scale));
+    }
+}
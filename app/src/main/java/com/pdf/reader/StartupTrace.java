@@ -0,0 +1,74 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 冷启动计时：从进程启动（API 24 以下取 onCreate）到首屏页面出现。
+ * 各阶段打印到日志，首屏耗时连同版本号追加到 files/startup_trace.csv，便于跨版本对比。
+ * 只在自动打开上次文件的启动路径上计时，其余路径调用 abandon() 放弃本次记录。
+ */
+public final class StartupTrace {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String FILE_NAME = "startup_trace.csv";
+    // 文件超过这个大小就从头重写，只保留最近的记录
+    private static final long MAX_FILE_BYTES = 64 * 1024;
+
+    private static long start = 0;
+    private static boolean done = true;
+
+    private StartupTrace() {}
+
+    public static void begin() {
+        start = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartUptimeMillis() : SystemClock.uptimeMillis();
+        done = false;
+        mark("onCreate");
+    }
+
+    public static void mark(String phase) {
+        if (done) return;
+        Log.i(TAG, "启动 " + phase + " +" + (SystemClock.uptimeMillis() - start) + "ms");
+    }
+
+    public static void abandon() {
+        done = true;
+    }
+
+    /** 首屏页面出现；source 为 snapshot / render 等，只记录第一次 */
+    public static void firstPage(Context context, String source) {
+        if (done) return;
+        long elapsed = SystemClock.uptimeMillis() - start;
+        done = true;
+        Log.i(TAG, "启动 首屏(" + source + ") +" + elapsed + "ms");
+        String version = versionName(context);
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        new Thread(() -> {
+            boolean append = file.length() < MAX_FILE_BYTES;
+            try (Writer w = new FileWriter(file, append)) {
+                if (!append || file.length() == 0) w.write("time,version,source,ms\n");
+                w.write(System.currentTimeMillis() + "," + version + "," + source + "," + elapsed + "\n");
+            } catch (IOException e) {
+                Log.e(TAG, "写入启动记录失败", e);
+            }
+        }, "StartupTrace").start();
+    }
+
+    private static String versionName(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "?";
+        }
+    }
+}
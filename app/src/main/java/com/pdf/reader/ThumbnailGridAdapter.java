@@ -0,0 +1,121 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 缩略图网格：只有绑定到屏幕上的格子才请求缩略图，格子被回收或改绑时取消旧请求，
+ * 快速拖过整本书时后台只渲染最后停留处附近的页面。
+ */
+public class ThumbnailGridAdapter extends RecyclerView.Adapter<ThumbnailGridAdapter.Holder> {
+
+    public interface OnPageClickListener {
+        void onPageClick(int page);
+    }
+
+    private final ThumbnailProvider provider;
+    private final OnPageClickListener listener;
+    private final int pageCount;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int textColor;
+    private final int highlightColor;
+    private final ColorFilter toneFilter;
+    private int currentPage;
+    private int holderSeq = 0;
+
+    public ThumbnailGridAdapter(ThumbnailProvider provider, int pageCount, int currentPage,
+                                int cellWidth, int textColor, int highlightColor, ColorFilter toneFilter,
+                                OnPageClickListener listener) {
+        this.provider = provider;
+        this.pageCount = pageCount;
+        this.currentPage = currentPage;
+        this.cellWidth = cellWidth;
+        // 按常见的竖版页面比例预留高度，缩略图到达前格子不跳动
+        this.cellHeight = Math.round(cellWidth * 1.45f);
+        this.textColor = textColor;
+        this.highlightColor = highlightColor;
+        this.toneFilter = toneFilter;
+        this.listener = listener;
+    }
+
+    @Override
+    public int getItemCount() {
+        return pageCount;
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        FrameLayout cell = new FrameLayout(parent.getContext());
+        cell.setLayoutParams(new RecyclerView.LayoutParams(cellWidth, cellHeight));
+        cell.setPadding(6, 6, 6, 6);
+
+        ImageView image = new ImageView(parent.getContext());
+        image.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        image.setColorFilter(toneFilter);
+        image.setLayoutParams(new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT));
+
+        TextView label = new TextView(parent.getContext());
+        label.setTextSize(11);
+        label.setTextColor(textColor);
+        label.setBackgroundColor(Color.parseColor("#80000000"));
+        label.setPadding(6, 2, 6, 2);
+        FrameLayout.LayoutParams labelParams = new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT);
+        labelParams.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
+        label.setLayoutParams(labelParams);
+
+        cell.addView(image);
+        cell.addView(label);
+        return new Holder(cell, image, label, "thumb_" + (holderSeq++));
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        holder.page = position;
+        holder.label.setText(String.valueOf(position + 1));
+        holder.itemView.setBackgroundColor(position == currentPage ? highlightColor : Color.TRANSPARENT);
+        holder.itemView.setOnClickListener(v -> listener.onPageClick(holder.page));
+        int thumbWidth = cellWidth - 12;
+        Bitmap cached = provider.getCached(position, thumbWidth);
+        if (cached != null) {
+            provider.cancel(holder.tag);
+            holder.image.setImageBitmap(cached);
+            return;
+        }
+        holder.image.setImageBitmap(null);
+        provider.load(holder.tag, position, thumbWidth, (page, bitmap) -> {
+            if (holder.page == page) holder.image.setImageBitmap(bitmap);
+        });
+    }
+
+    @Override
+    public void onViewRecycled(Holder holder) {
+        provider.cancel(holder.tag);
+        holder.page = -1;
+        holder.image.setImageBitmap(null);
+    }
+
+    static class Holder extends RecyclerView.ViewHolder {
+        final ImageView image;
+        final TextView label;
+        final String tag;
+        int page = -1;
+
+        Holder(FrameLayout cell, ImageView image, TextView label, String tag) {
+            super(cell);
+            this.image = image;
+            this.label = label;
+            this.tag = tag;
+        }
+    }
+}
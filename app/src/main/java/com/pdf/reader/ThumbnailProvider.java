@@ -0,0 +1,157 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 缩略图提供者：用一个独立的低优先级 PageRenderEngine 打开同一文档，
+ * 缩略图渲染排不进主阅读引擎的队列，也抢不到它的 CPU。
+ * 结果先进内存 LRU，再按文档写入 getCacheDir()/thumbs/<文档摘要>/，下次打开同一本书直接读盘。
+ */
+public class ThumbnailProvider {
+
+    private static final String TAG = "PDF_DEBUG";
+    private static final String DIR_NAME = "thumbs";
+    private static final int QUALITY = 80;
+    // 最多保留这么多本书的缩略图目录，按最近使用淘汰
+    private static final int MAX_DOCUMENTS = 30;
+
+    public interface Callback {
+        void onThumbnail(int page, Bitmap bitmap);
+    }
+
+    private final File root;
+    private final LruCache<String, Bitmap> memory;
+    private PageRenderEngine engine;
+    private String openId;
+    private File docDir;
+
+    public ThumbnailProvider(Context context) {
+        root = new File(context.getCacheDir(), DIR_NAME);
+        // 缩略图可能正显示在格子里，淘汰时只丢引用，不回收
+        memory = new LruCache<String, Bitmap>(PageBitmapCache.budgetFor(context) / 4) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /** 为文档准备缩略图；同一文件重复调用不会重新打开 */
+    public void open(DocumentSource source) {
+        String id = source.cacheId();
+        if (id.equals(openId)) return;
+        if (engine == null) {
+            engine = new PageRenderEngine(null, "ThumbnailRenderer", Process.THREAD_PRIORITY_BACKGROUND);
+        }
+        openId = id;
+        docDir = new File(root, DiskPageCache.digest(id));
+        memory.evictAll();
+        engine.openDocument(source,
+                new PageRenderEngine.OpenCallback() {
+                    @Override
+                    public void onOpened(int pageCount) { }
+
+                    @Override
+                    public void onFailed(Exception e) { Log.e(TAG, "缩略图打开文档失败", e); }
+                });
+        File dir = docDir;
+        new Thread(() -> prune(dir), "ThumbnailPrune").start();
+    }
+
+    public void close() {
+        if (engine != null) engine.closeDocument();
+        openId = null;
+        memory.evictAll();
+    }
+
+    public void release() {
+        if (engine != null) { engine.release(); engine = null; }
+        openId = null;
+        memory.evictAll();
+    }
+
+    public Bitmap getCached(int page, int width) {
+        return memory.get(page + "_" + width);
+    }
+
+    /**
+     * 请求一张宽为 width 的缩略图。tag 通常对应一个列表格子：
+     * 格子改绑其他页时用同一 tag 再请求，旧请求自动作废。
+     */
+    public void load(String tag, int page, int width, Callback callback) {
+        if (engine == null || openId == null) return;
+        String key = page + "_" + width;
+        File dir = docDir;
+        engine.submit(tag, PageRenderEngine.PRIORITY_PREFETCH,
+                renderer -> loadOrRender(renderer, dir, page, width),
+                new PageRenderEngine.Callback() {
+                    @Override
+                    public void onRendered(Bitmap bitmap) {
+                        memory.put(key, bitmap);
+                        callback.onThumbnail(page, bitmap);
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) { Log.e(TAG, "缩略图渲染失败: 第" + (page + 1) + "页", e); }
+                });
+    }
+
+    public void cancel(String tag) {
+        if (engine != null) engine.cancel(tag);
+    }
+
+    // 在缩略图渲染线程上执行
+    private Bitmap loadOrRender(PdfRenderer renderer, File dir, int page, int width) throws IOException {
+        File file = new File(dir, page + "_" + width + ".webp");
+        if (file.exists()) {
+            Bitmap cached = BitmapFactory.decodeFile(file.getPath());
+            if (cached != null) return cached;
+            file.delete();
+        }
+        PdfRenderer.Page p = renderer.openPage(page);
+        Bitmap bitmap;
+        try {
+            float scale = (float) width / p.getWidth();
+            bitmap = Bitmap.createBitmap(width, RenderResolution.scaled(p.getHeight(), scale), Bitmap.Config.ARGB_8888);
+            bitmap.eraseColor(Color.WHITE);
+            p.render(bitmap, null, RenderResolution.pageMatrix(scale, 0), PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        } finally {
+            p.close();
+        }
+        if (dir.exists() || dir.mkdirs()) {
+            File tmp = new File(dir, file.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                bitmap.compress(Bitmap.CompressFormat.WEBP, QUALITY, out);
+            }
+            if (!tmp.renameTo(file)) tmp.delete();
+        }
+        return bitmap;
+    }
+
+    // 刷新当前文档目录的使用时间，删掉最久没打开过的那些文档的缩略图
+    private void prune(File current) {
+        current.setLastModified(System.currentTimeMillis());
+        File[] dirs = root.listFiles();
+        if (dirs == null || dirs.length <= MAX_DOCUMENTS) return;
+        Arrays.sort(dirs, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_DOCUMENTS; i < dirs.length; i++) {
+            if (dirs[i].equals(current)) continue;
+            File[] files = dirs[i].listFiles();
+            if (files != null) for (File f : files) f.delete();
+            dirs[i].delete();
+        }
+    }
+}
@@ -2,44 +2,53 @@ package com.pdf.reader;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
-import android.graphics.pdf.PdfRenderer;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.ParcelFileDescriptor;
-import android.util.Base64;
+import android.provider.DocumentsContract;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 import android.webkit.WebChromeClient;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 public class TianLangActivity extends AppCompatActivity {
 
     private WebView webView;
-    private PdfRenderer pdfRenderer;
-    private ParcelFileDescriptor fileDescriptor;
+    private PdfPageImporter importer;
+    // 当前这本书的页面目录，按页号找 pdf_page_N 时用
+    private File pageDir;
+    private final TianLangImageEngine imageEngine = new TianLangImageEngine();
+    private TianLangBatchCrop batchCrop;
     private int totalPages = 0;
     private String currentFileName = "未命名";
 
     private byte[] pendingSaveData;
     private String pendingSaveFileName;
+    private String pendingCropPath;     // 待保存的裁切：页面文件和区域
+    private Rect pendingCropRegion;
     private String tempPdfForSave = null;  // 原生导出的临时文件路径
 
     private static final int PICK_IMAGE = 1;
@@ -47,6 +56,11 @@ public class TianLangActivity extends AppCompatActivity {
     private static final int CREATE_FILE = 3;
     private static final int PICK_PROJECT = 4;
     private static final int CREATE_PDF_FILE = 5;   // 原生 PDF 保存
+    private static final int CREATE_CROP_FILE = 6;  // 单张裁切图保存
+    private static final String PREFS_NAME = "tianlang";
+    private static final String KEY_PAGE_FORMAT = "page_format";
+    // PDF 导入的页面目录（在缓存目录下）
+    private static final String PAGE_DIR = "tianlang_pages";
 
     private final List<byte[]> pdfPagesData = new ArrayList<>();   // 保留，但原生导出不再使用
 
@@ -65,7 +79,20 @@ public class TianLangActivity extends AppCompatActivity {
 
         webView.addJavascriptInterface(new NativeBridge(), "Android");
 
-        webView.setWebViewClient(new WebViewClient());
+        webView.setWebViewClient(new WebViewClient() {
+            // .bmpz 页面边解压边交给浏览器，浏览器本身认得 BMP
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                String path = request.getUrl().getPath();
+                if (!"file".equals(request.getUrl().getScheme()) || !PageImageFormat.isDeflatedBmp(path)) return null;
+                try {
+                    return new WebResourceResponse("image/bmp", null, PageImageFormat.open(new File(path)));
+                } catch (IOException e) {
+                    Log.e("TianLang", "读取页面失败: " + path, e);
+                    return null;
+                }
+            }
+        });
         webView.setWebChromeClient(new WebChromeClient());
 
         webView.loadUrl("file:///android_asset/tianlang.html");
@@ -94,29 +121,28 @@ public class TianLangActivity extends AppCompatActivity {
             runOnUiThread(() -> Toast.makeText(TianLangActivity.this, message, Toast.LENGTH_SHORT).show());
         }
 
-        // 保存单张图片（保留）
+        // 保存单张裁切图：网页只传页面文件路径和原图坐标，原生端直接从页面文件裁出写 PNG，
+        // 不再把整张图转成 Base64 字符串经桥传过来
         @JavascriptInterface
-        public void saveFile(String base64, String fileName) {
-            try {
-                pendingSaveData = Base64.decode(base64, Base64.DEFAULT);
-                pendingSaveFileName = fileName;
-                Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
-                intent.addCategory(Intent.CATEGORY_OPENABLE);
-                intent.setType("*/*");
-                intent.putExtra(Intent.EXTRA_TITLE, fileName);
-                startActivityForResult(intent, CREATE_FILE);
-            } catch (Exception e) {
-                showToast("保存失败: " + e.getMessage());
-            }
+        public void saveCrop(String path, int left, int top, int right, int bottom, String fileName) {
+            pendingCropPath = path;
+            pendingCropRegion = new Rect(left, top, right, bottom);
+            pendingSaveFileName = fileName;
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("image/png");
+            intent.putExtra(Intent.EXTRA_TITLE, fileName);
+            startActivityForResult(intent, CREATE_CROP_FILE);
         }
 
-        // 项目保存/加载
+        // 项目保存/加载；json 直接传原文，旧版传的 encodeURIComponent 结果（以 % 开头）仍兼容
         @JavascriptInterface
-        public void saveProject(String safeJson) {
+        public void saveProject(String json) {
             try {
-                String json = URLDecoder.decode(safeJson, "UTF-8");
-                pendingSaveData = json.getBytes("UTF-8");
+                if (json.startsWith("%")) json = URLDecoder.decode(json, "UTF-8");
+                pendingSaveData = json.getBytes(StandardCharsets.UTF_8);
                 String name = "天朗项目_" + System.currentTimeMillis() + ".tianlang";
+                pendingSaveFileName = name;
                 Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
                 intent.setType("application/json");
@@ -127,6 +153,72 @@ public class TianLangActivity extends AppCompatActivity {
             }
         }
 
+        // 页面缓存格式：png / webp / fast / gray / auto
+        @JavascriptInterface
+        public String getPageFormat() {
+            return PageImageFormat.name(PageImageFormat.supported(pageFormat()));
+        }
+
+        @JavascriptInterface
+        public void setPageFormat(String name) {
+            int format = PageImageFormat.parse(name);
+            if (PageImageFormat.supported(format) != format) showToast("本机系统不支持WebP无损，将按PNG保存");
+            getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putInt(KEY_PAGE_FORMAT, format).apply();
+        }
+
+        // 用当前页对比各格式的编码、解码耗时和占用空间
+        @JavascriptInterface
+        public void benchmarkPageFormats(String path) {
+            new Thread(() -> {
+                Bitmap sample = null;
+                try {
+                    sample = PageImageFormat.decode(new File(path));
+                    if (sample == null) throw new IOException("无法解码");
+                    String report = PageImageFormat.benchmark(sample, getCacheDir());
+                    Log.d("TianLang", "格式测速\n" + report);
+                    runOnUiThread(() -> new AlertDialog.Builder(TianLangActivity.this)
+                            .setTitle("页面格式测速").setMessage(report).setPositiveButton("确定", null).show());
+                } catch (IOException | RuntimeException e) {
+                    showToastSafe("测速失败: " + e.getMessage());
+                } finally {
+                    if (sample != null) sample.recycle();
+                }
+            }, "FormatBenchmark").start();
+        }
+
+        // 页面分析（去背景、左右切线、中缝）在原生端算；paramsJson 是 getBgParams() 与 getStackParams() 的合并，
+        // 返回 {bgCrop:{left,top,width,height}, leftCut, rightCut, bindLine}，失败返回 null
+        @JavascriptInterface
+        public String analyzePage(String path, String paramsJson) {
+            try {
+                TianLangImageEngine.Params params = new TianLangImageEngine.Params(new JSONObject(paramsJson));
+                return imageEngine.analyze(path, params).toJson().toString();
+            } catch (Exception e) {
+                Log.e("TianLang", "页面分析失败: " + path, e);
+                return null;
+            }
+        }
+
+        // 整本批量分析：pathsJson 是页面路径数组，参数同 analyzePage。
+        // 每页好了回调 onBatchCropResult(结果，另带 index / path)，全部完成回调 onBatchCropFinished(成功页数)
+        @JavascriptInterface
+        public void startBatchCrop(String pathsJson, String paramsJson) {
+            try {
+                JSONArray array = new JSONArray(pathsJson);
+                List<String> paths = new ArrayList<>();
+                for (int i = 0; i < array.length(); i++) paths.add(array.getString(i));
+                TianLangImageEngine.Params params = new TianLangImageEngine.Params(new JSONObject(paramsJson));
+                runOnUiThread(() -> startBatch(paths, params));
+            } catch (Exception e) {
+                showToast("批量分析失败: " + e.getMessage());
+            }
+        }
+
+        @JavascriptInterface
+        public void cancelBatchCrop() {
+            runOnUiThread(TianLangActivity.this::cancelBatch);
+        }
+
         @JavascriptInterface
         public void pickProject() {
             Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
@@ -135,75 +227,64 @@ public class TianLangActivity extends AppCompatActivity {
         }
 
         // ─── 原生 PDF 导出（新） ───
+        // 每页只解码裁切区域，写完立即回收；PDF 边生成边写盘，内存占用与总页数无关
+        // cropInfoJson: [{path, index, left, right, top, bottom, bind}]，坐标是整页图片上的像素，
+        // path 缺省时按 index 找 pdf_page_N，left / right 缺省时取整页宽度，top / bottom 缺省时取整页高度，
+        // bind <= 0 表示不分页；分析失败的页不带坐标，整页导出
         @JavascriptInterface
         public void beginNativeExport(String cropInfoJson, String outputName) {
             try {
                 final JSONArray array = new JSONArray(cropInfoJson);
                 showToast("开始原生导出，保持原始分辨率...");
 
-                new AsyncTask<Void, Void, File>() {
+                new AsyncTask<Void, Integer, File>() {
                     @Override
                     protected File doInBackground(Void... voids) {
                         File tempFile = new File(getCacheDir(), outputName + "_temp.pdf");
-                        FileOutputStream fos = null;
-                        try {
-                            fos = new FileOutputStream(tempFile);
-                            android.graphics.pdf.PdfDocument document = new android.graphics.pdf.PdfDocument();
-
+                        try (ImagePdfWriter writer = new ImagePdfWriter(new FileOutputStream(tempFile))) {
                             for (int i = 0; i < array.length(); i++) {
                                 JSONObject obj = array.getJSONObject(i);
-                                int index = obj.getInt("index");
-                                int left = obj.getInt("left");
-                                int right = obj.getInt("right");
-                                int bind = obj.optInt("bind", -1);
-                                // 可选模式，但裁剪逻辑已包含所有情况
-                                // String mode = obj.optString("mode");
-
-                                File imgFile = new File(getCacheDir(), "pdf_page_" + index + ".png");
-                                if (!imgFile.exists()) {
-                                    Log.e("TianLang", "图片不存在: " + imgFile.getPath());
-                                    continue;
-                                }
-
-                                Bitmap src = BitmapFactory.decodeFile(imgFile.getAbsolutePath());
-                                if (src == null) {
-                                    Log.e("TianLang", "解码失败: " + imgFile.getPath());
+                                int index = obj.optInt("index", i);
+                                String path = obj.optString("path", "");
+                                File imgFile = !path.isEmpty() ? new File(path)
+                                        : pageDir != null ? PageImageFormat.find(pageDir, "pdf_page_" + index) : null;
+                                if (imgFile == null || !imgFile.exists()) {
+                                    Log.e("TianLang", "图片不存在: 第" + (index + 1) + "页");
                                     continue;
                                 }
+                                int left = obj.optInt("left", 0);
+                                int right = obj.optInt("right", Integer.MAX_VALUE);
+                                int top = obj.optInt("top", 0);
+                                int bottom = obj.optInt("bottom", Integer.MAX_VALUE);
+                                int bind = obj.optInt("bind", -1);
 
-                                // 裁剪并添加页面
+                                // 先右半页，后左半页
                                 if (bind > 0 && bind > left && bind < right) {
-                                    // 先右半页，后左半页
-                                    Bitmap rightPart = Bitmap.createBitmap(src, bind, 0, right - bind, src.getHeight());
-                                    Bitmap leftPart = Bitmap.createBitmap(src, left, 0, bind - left, src.getHeight());
-                                    addBitmapToPdf(document, rightPart);
-                                    addBitmapToPdf(document, leftPart);
-                                    rightPart.recycle();
-                                    leftPart.recycle();
+                                    addRegion(writer, imgFile, new Rect(bind, top, right, bottom));
+                                    addRegion(writer, imgFile, new Rect(left, top, bind, bottom));
                                 } else {
-                                    Bitmap crop = Bitmap.createBitmap(src, left, 0, right - left, src.getHeight());
-                                    addBitmapToPdf(document, crop);
-                                    crop.recycle();
+                                    addRegion(writer, imgFile, new Rect(left, top, right, bottom));
                                 }
-                                src.recycle();
+                                publishProgress(i + 1, array.length());
                             }
-
-                            document.writeTo(fos);
-                            document.close();
+                            if (writer.pageCount() == 0) throw new IOException("没有可导出的页面");
                             return tempFile;
                         } catch (Exception e) {
                             Log.e("TianLang", "原生导出失败", e);
                             if (tempFile.exists()) tempFile.delete();
                             return null;
-                        } finally {
-                            if (fos != null) {
-                                try { fos.close(); } catch (Exception ignored) {}
-                            }
                         }
                     }
 
+                    @Override
+                    protected void onProgressUpdate(Integer... values) {
+                        webView.evaluateJavascript("javascript:if(window.onExportProgress) onExportProgress("
+                                + values[0] + ", " + values[1] + ")", null);
+                    }
+
                     @Override
                     protected void onPostExecute(File pdfFile) {
+                        webView.evaluateJavascript("javascript:if(window.onExportFinished) onExportFinished()", null);
                         if (pdfFile == null || !pdfFile.exists()) {
                             showToast("PDF 生成失败，请检查日志");
                             return;
@@ -220,17 +301,23 @@ public class TianLangActivity extends AppCompatActivity {
 
             } catch (Exception e) {
                 showToast("参数解析错误: " + e.getMessage());
+                webView.post(() -> webView.evaluateJavascript(
+                        "javascript:if(window.onExportFinished) onExportFinished()", null));
             }
         }
 
-        private void addBitmapToPdf(android.graphics.pdf.PdfDocument doc, Bitmap bitmap) {
-            if (bitmap == null || bitmap.isRecycled()) return;
-            android.graphics.pdf.PdfDocument.PageInfo info =
-                    new android.graphics.pdf.PdfDocument.PageInfo.Builder(
-                            bitmap.getWidth(), bitmap.getHeight(), doc.getPages().size()).create();
-            android.graphics.pdf.PdfDocument.Page page = doc.startPage(info);
-            page.getCanvas().drawBitmap(bitmap, 0, 0, null);
-            doc.finishPage(page);
+        private void addRegion(ImagePdfWriter writer, File imgFile, Rect region) throws IOException {
+            if (region.width() <= 0 || region.height() <= 0) return;
+            Bitmap part = PageImageFormat.decodeRegion(imgFile, region);
+            if (part == null) {
+                Log.e("TianLang", "解码失败: " + imgFile.getPath());
+                return;
+            }
+            try {
+                writer.addPage(part);
+            } finally {
+                part.recycle();
+            }
         }
 
         // 保留旧接口兼容，但不再使用（可空实现）
@@ -278,6 +365,13 @@ public class TianLangActivity extends AppCompatActivity {
                 }
             } else if (requestCode == PICK_PROJECT) {
                 loadProjectFromUri(uri);
+            } else if (requestCode == CREATE_CROP_FILE) {
+                if (pendingCropPath != null) {
+                    writeCropToUri(uri, pendingCropPath, pendingCropRegion, pendingSaveFileName);
+                    pendingCropPath = null;
+                    pendingCropRegion = null;
+                    pendingSaveFileName = null;
+                }
             } else if (requestCode == CREATE_PDF_FILE) {
                 if (tempPdfForSave != null) {
                     copyTempPdfToUri(tempPdfForSave, uri);
@@ -302,6 +396,35 @@ public class TianLangActivity extends AppCompatActivity {
         }
     }
 
+    // 只解码裁切区域，压成 PNG 直接写进目标文件
+    private void writeCropToUri(Uri uri, String path, Rect region, String fileName) {
+        new Thread(() -> {
+            Bitmap part = null;
+            boolean saved = false;
+            try (OutputStream os = getContentResolver().openOutputStream(uri)) {
+                if (os == null) throw new IOException("无法写入文件");
+                part = PageImageFormat.decodeRegion(new File(path), region);
+                if (part == null) throw new IOException("解码失败");
+                if (!part.compress(Bitmap.CompressFormat.PNG, 100, os)) throw new IOException("压缩失败");
+                saved = true;
+            } catch (IOException | RuntimeException e) {
+                showToastSafe("保存失败: " + e.getMessage());
+            } finally {
+                if (part != null) part.recycle();
+            }
+            if (saved) {
+                showToastSafe("已保存: " + fileName);
+                return;
+            }
+            // 文件选择器已经建好了文档，失败时删掉，不留下空文件或半截文件
+            try {
+                DocumentsContract.deleteDocument(getContentResolver(), uri);
+            } catch (Exception e) {
+                Log.e("TianLang", "删除未写成的文件失败", e);
+            }
+        }, "SaveCrop").start();
+    }
+
     // ── 图片导入 ──
     private void handleImageResult(Intent data) {
         List<Uri> uris = new ArrayList<>();
@@ -339,126 +462,79 @@ public class TianLangActivity extends AppCompatActivity {
         }
     }
 
-    // ── PDF 导入并渲染所有页面为 PNG ──
+    // ── PDF 导入：渲染与编码流水线，页面边好边送给网页 ──
     private void handlePdfUri(Uri uri) {
-        try {
-            closePdf();
-            fileDescriptor = getContentResolver().openFileDescriptor(uri, "r");
-            pdfRenderer = new PdfRenderer(fileDescriptor);
-            totalPages = pdfRenderer.getPageCount();
-            currentFileName = getFileName(uri);
-            renderAllPagesInBackground();
-        } catch (Exception e) {
-            Log.e("TianLang", "PDF打开失败", e);
-            showToastSafe("PDF打开失败");
-        }
-    }
+        closePdf();
+        currentFileName = getFileName(uri);
+        importer = new PdfPageImporter(new File(getCacheDir(), PAGE_DIR), pageFormat());
+        pageDir = importer.dir();
+        importer.start(() -> {
+            ParcelFileDescriptor fd = getContentResolver().openFileDescriptor(uri, "r");
+            if (fd == null) throw new FileNotFoundException(uri.toString());
+            return fd;
+        }, new PdfPageImporter.Listener() {
+            @Override
+            public void onStarted(int pages) {
+                totalPages = pages;
+                webView.evaluateJavascript(String.format("javascript:onPdfImportStart('%s', %d)",
+                        escapeJsString(currentFileName), pages), null);
+            }
 
-    private void renderAllPagesInBackground() {
-        new AsyncTask<Void, Integer, List<String>>() {
             @Override
-            protected void onPreExecute() {
+            public void onPages(List<String> paths, int done, int pages) {
+                if (!paths.isEmpty()) {
+                    String json = new JSONArray(paths).toString();
+                    webView.evaluateJavascript(
+                            String.format("javascript:onPdfPagesReady('%s')", escapeJson(json)), null);
+                }
                 webView.evaluateJavascript(
-                        "javascript:if(window.onPdfRenderProgress) onPdfRenderProgress(0, " + totalPages + ")",
+                        "javascript:if(window.onPdfRenderProgress) onPdfRenderProgress(" + done + ", " + pages + ")",
                         null);
             }
 
             @Override
-            protected List<String> doInBackground(Void... voids) {
-                List<String> paths = new ArrayList<>();
-                final int MAX_DIM = 3000; // 限制长边最大尺寸，避免 OOM
-
-                for (int i = 0; i < totalPages; i++) {
-                    try {
-                        PdfRenderer.Page page = pdfRenderer.openPage(i);
-                        int w = page.getWidth();
-                        int h = page.getHeight();
-
-                        float scale = 1.0f;
-                        if (Math.max(w, h) > MAX_DIM) {
-                            scale = (float) MAX_DIM / Math.max(w, h);
-                        }
-                        int newW = Math.round(w * scale);
-                        int newH = Math.round(h * scale);
-
-                        Bitmap bitmap = Bitmap.createBitmap(newW, newH, Bitmap.Config.ARGB_8888);
-                        Matrix matrix = new Matrix();
-                        matrix.postScale(scale, scale);
-                        page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-                        page.close();
-
-                        if (!isBitmapValid(bitmap)) {
-                            bitmap.recycle();
-                            Log.e("TianLang", "第" + (i+1) + "页渲染无效（可能JPEG2000），已跳过");
-                            continue;
-                        }
-
-                        File tempFile = new File(getCacheDir(), "pdf_page_" + i + ".png");
-                        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                            bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
-                        }
-                        bitmap.recycle();
-
-                        // 校验 PNG 有效性
-                        Bitmap testBmp = BitmapFactory.decodeFile(tempFile.getAbsolutePath());
-                        if (testBmp == null) {
-                            tempFile.delete();
-                            Log.e("TianLang", "第" + (i+1) + "页PNG写入失败，跳过");
-                            continue;
-                        } else {
-                            testBmp.recycle();
-                        }
-
-                        paths.add(tempFile.getAbsolutePath());
-                        publishProgress(i + 1);
-                    } catch (Exception e) {
-                        Log.e("TianLang", "渲染第" + (i+1) + "页异常: " + e.getMessage());
-                    }
-                }
-                return paths;
+            public void onFinished(int pageCount) {
+                webView.evaluateJavascript("javascript:hidePdfRenderProgress()", null);
+                if (pageCount == 0) showToastSafe("PDF渲染失败（所有页均无效）");
             }
 
             @Override
-            protected void onProgressUpdate(Integer... values) {
-                int progress = values[0];
-                webView.evaluateJavascript(
-                        "javascript:if(window.onPdfRenderProgress) onPdfRenderProgress(" + progress + ", " + totalPages + ")",
-                        null);
+            public void onFailed(Exception e) {
+                Log.e("TianLang", "PDF打开失败", e);
+                webView.evaluateJavascript("javascript:hidePdfRenderProgress()", null);
+                showToastSafe("PDF打开失败");
             }
+        });
+    }
 
+    // ── 批量分析 ──
+    private void startBatch(List<String> paths, TianLangImageEngine.Params params) {
+        cancelBatch();
+        batchCrop = new TianLangBatchCrop();
+        batchCrop.start(paths, params, new TianLangBatchCrop.Listener() {
             @Override
-            protected void onPostExecute(List<String> paths) {
-                webView.evaluateJavascript("javascript:hidePdfRenderProgress()", null);
-                if (!paths.isEmpty()) {
-                    String json = new JSONArray(paths).toString();
-                    webView.evaluateJavascript(
-                            String.format("javascript:onPdfBatch('%s', '%s', %d)",
-                                    escapeJson(json),
-                                    escapeJsString(currentFileName),
-                                    paths.size()),
-                            null
-                    );
-                } else {
-                    showToastSafe("PDF渲染失败（所有页均无效）");
+            public void onPage(int index, String path, TianLangImageEngine.Result result) {
+                try {
+                    String json = result.toJson().put("index", index).put("path", path).toString();
+                    webView.evaluateJavascript("javascript:onBatchCropResult('" + escapeJson(json) + "')", null);
+                } catch (Exception e) {
+                    Log.e("TianLang", "批量结果回传失败", e);
                 }
             }
-        }.execute();
+
+            @Override
+            public void onFinished(int analyzed) {
+                batchCrop = null;
+                webView.evaluateJavascript("javascript:onBatchCropFinished(" + analyzed + ")", null);
+            }
+        });
     }
 
-    // Bitmap 有效性简单检测
-    private boolean isBitmapValid(Bitmap bitmap) {
-        if (bitmap == null || bitmap.getWidth() < 5 || bitmap.getHeight() < 5) return false;
-        int[] colors = new int[5];
-        int w = bitmap.getWidth(), h = bitmap.getHeight();
-        colors[0] = bitmap.getPixel(0, 0);
-        colors[1] = bitmap.getPixel(w-1, 0);
-        colors[2] = bitmap.getPixel(0, h-1);
-        colors[3] = bitmap.getPixel(w-1, h-1);
-        colors[4] = bitmap.getPixel(w/2, h/2);
-        for (int i = 1; i < colors.length; i++) {
-            if (colors[i] != colors[0]) return true;
+    private void cancelBatch() {
+        if (batchCrop != null) {
+            batchCrop.cancel();
+            batchCrop = null;
         }
-        return false;
     }
 
     // ── 项目加载 ──
@@ -511,14 +587,17 @@ public class TianLangActivity extends AppCompatActivity {
     }
 
     private void closePdf() {
-        if (pdfRenderer != null) {
-            pdfRenderer.close();
-            pdfRenderer = null;
-        }
-        if (fileDescriptor != null) {
-            try { fileDescriptor.close(); } catch (Exception e) { /* ignore */ }
-            fileDescriptor = null;
+        if (importer != null) {
+            importer.cancel();
+            importer = null;
         }
+        cancelBatch();
+        // 换书后旧页面的像素不会再用到
+        imageEngine.clear();
+    }
+
+    private int pageFormat() {
+        return getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getInt(KEY_PAGE_FORMAT, PageImageFormat.AUTO);
     }
 
     private void showToastSafe(final String msg) {
@@ -529,9 +608,11 @@ public class TianLangActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         closePdf();
+        PdfPageImporter.deleteTree(new File(getCacheDir(), PAGE_DIR));
         File[] files = getCacheDir().listFiles();
         if (files != null) {
             for (File f : files) {
+                // pdf_page_ 是旧版直接写在缓存根目录的页面
                 if (f.getName().startsWith("img_") || f.getName().startsWith("pdf_page_")) {
                     f.delete();
                 }
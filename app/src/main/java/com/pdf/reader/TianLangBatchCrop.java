@@ -0,0 +1,72 @@
+package com.pdf.reader;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 整本书批量分析：按同一组参数对每页做去背景、切线、中缝检测，放在 TianLangImageEngine 的 fork-join 池里并行，
+ * 哪页先好就先回调哪页，可随时取消。
+ * 同时在内存里的页数按堆大小限制（每页要整页像素和几张掩码），页内再按行分条，少几页同时跑也能用满各核。
+ */
+public class TianLangBatchCrop {
+
+    private static final String TAG = "TianLang";
+    // 一页 3000×3000（导入时的最大边长）分析时约占：像素 int[] + 解码位图 + 三张字节掩码
+    private static final long PAGE_BYTES = 3000L * 3000 * (4 + 4 + 3);
+
+    /** 在主线程回调 */
+    public interface Listener {
+        void onPage(int index, String path, TianLangImageEngine.Result result);
+        /** 全部完成；analyzed 不含失败的页 */
+        void onFinished(int analyzed);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean cancelled = false;
+
+    public void start(List<String> paths, TianLangImageEngine.Params params, Listener listener) {
+        int total = paths.size();
+        if (total == 0) {
+            post(() -> listener.onFinished(0));
+            return;
+        }
+        long budget = Runtime.getRuntime().maxMemory() / 2;
+        int workers = (int) Math.max(1, Math.min(Math.min(TianLangImageEngine.POOL.getParallelism(), total), budget / PAGE_BYTES));
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger(workers);
+        AtomicInteger analyzed = new AtomicInteger();
+        for (int w = 0; w < workers; w++) {
+            TianLangImageEngine.POOL.execute(() -> {
+                int index;
+                while (!cancelled && (index = next.getAndIncrement()) < total) {
+                    String path = paths.get(index);
+                    try {
+                        TianLangImageEngine.Result result = TianLangImageEngine.analyzeFile(path, params);
+                        analyzed.incrementAndGet();
+                        final int page = index;
+                        post(() -> listener.onPage(page, path, result));
+                    } catch (IOException | RuntimeException e) {
+                        Log.e(TAG, "第" + (index + 1) + "页分析失败，跳过", e);
+                    }
+                }
+                if (running.decrementAndGet() == 0) post(() -> listener.onFinished(analyzed.get()));
+            });
+        }
+    }
+
+    /** 停止分析；正在算的页算完即止，之后不再回调 */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void post(Runnable r) {
+        mainHandler.post(() -> {
+            if (!cancelled) r.run();
+        });
+    }
+}
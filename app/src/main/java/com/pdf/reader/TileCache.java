@@ -0,0 +1,69 @@
+package com.pdf.reader;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * 深度缩放图块缓存，按字节数限额。
+ * 图块可能正挂在 TileOverlayView 上，淘汰时不回收也不放回位图池，交给 GC 处理。
+ */
+public class TileCache {
+
+    /** 图块边长（图块像素） */
+    public static final int TILE_SIZE = 512;
+
+    private final LruCache<Key, Bitmap> cache;
+
+    public TileCache(int maxBytes) {
+        cache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    public Bitmap get(Key key) {
+        Bitmap bmp = cache.get(key);
+        return bmp != null && !bmp.isRecycled() ? bmp : null;
+    }
+
+    public void put(Key key, Bitmap bitmap) {
+        if (bitmap != null) cache.put(key, bitmap);
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /** 图块键：所属页面、放大级别（相对底图的倍数）和图块行列 */
+    public static final class Key {
+        public final PageBitmapCache.Key page;
+        public final int level;
+        public final int tx, ty;
+
+        public Key(PageBitmapCache.Key page, int level, int tx, int ty) {
+            this.page = page;
+            this.level = level;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return level == k.level && tx == k.tx && ty == k.ty && page.equals(k.page);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = page.hashCode();
+            h = 31 * h + level;
+            h = 31 * h + tx;
+            h = 31 * h + ty;
+            return h;
+        }
+    }
+}
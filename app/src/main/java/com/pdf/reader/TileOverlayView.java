@@ -0,0 +1,96 @@
+package com.pdf.reader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 叠在 pdfImageView 上方的高清图块层。
+ * 图块坐标以底图（pdfImageView 当前位图）像素为单位，绘制时套用与 ImageView 相同的矩阵，
+ * 因此拖动、缩放时图块与底图始终对齐。本视图不处理触摸，事件会落到下面的 ImageView。
+ */
+public class TileOverlayView extends View {
+
+    private final List<Tile> tiles = new ArrayList<>();
+    private final Matrix imageMatrix = new Matrix();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public TileOverlayView(Context context) {
+        super(context);
+    }
+
+    /** 与底图相同的色调滤镜，null 为原色 */
+    public void setColorFilter(ColorFilter filter) {
+        paint.setColorFilter(filter);
+        invalidate();
+    }
+
+    public void setImageMatrix(Matrix matrix) {
+        imageMatrix.set(matrix);
+        invalidate();
+    }
+
+    /** 添加一个图块，dst 为其在底图上覆盖的区域 */
+    public void addTile(Object key, Bitmap bitmap, RectF dst) {
+        for (Tile t : tiles) if (t.key.equals(key)) return;
+        tiles.add(new Tile(key, bitmap, dst));
+        invalidate();
+    }
+
+    public boolean hasTile(Object key) {
+        for (Tile t : tiles) if (t.key.equals(key)) return true;
+        return false;
+    }
+
+    /** 只保留 keys 中的图块，移出可见区域的图块随之释放引用 */
+    public void retainTiles(Set<?> keys) {
+        // minSdk 21 没有 Collection.removeIf
+        boolean removed = false;
+        for (Iterator<Tile> it = tiles.iterator(); it.hasNext(); ) {
+            if (!keys.contains(it.next().key)) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (removed) invalidate();
+    }
+
+    public void clearTiles() {
+        if (tiles.isEmpty()) return;
+        tiles.clear();
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (tiles.isEmpty()) return;
+        canvas.save();
+        canvas.concat(imageMatrix);
+        for (Tile t : tiles) {
+            if (!t.bitmap.isRecycled()) canvas.drawBitmap(t.bitmap, null, t.dst, paint);
+        }
+        canvas.restore();
+    }
+
+    private static class Tile {
+        final Object key;
+        final Bitmap bitmap;
+        final RectF dst;
+
+        Tile(Object key, Bitmap bitmap, RectF dst) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.dst = dst;
+        }
+    }
+}
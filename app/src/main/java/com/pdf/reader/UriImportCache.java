@@ -0,0 +1,139 @@
+package com.pdf.reader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * 无法直接定位读取的 URI 只能先复制到本地，这里负责复制并记住结果。
+ * 副本以内容摘要命名，位于 getCacheDir()/imports；URI + 大小 + 开头 64KB 的摘要映射到副本，
+ * 同一 URI 再次打开时不用重新复制，内容相同的不同 URI 也共用一份副本。
+ */
+public class UriImportCache {
+
+    private static final String DIR_NAME = "imports";
+    private static final String PREFS_NAME = "uri_imports";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int MAX_COPIES = 5;
+
+    /** 在复制线程上回调 */
+    public interface Progress {
+        void onProgress(long copied, long total);
+    }
+
+    private final File dir;
+    private final SharedPreferences index;
+
+    public UriImportCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+        index = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** 返回本地副本；已有副本直接返回，否则复制。在后台线程调用 */
+    public File importUri(ContentResolver resolver, Uri uri, long size, Progress progress) throws IOException {
+        String headKey = DiskPageCache.digest(uri + "|" + size + "|" + headDigest(resolver, uri));
+        String known = index.getString(headKey, null);
+        if (known != null) {
+            File f = new File(known);
+            if (f.exists() && (size <= 0 || f.length() == size)) {
+                f.setLastModified(System.currentTimeMillis());
+                return f;
+            }
+        }
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("无法创建目录 " + dir);
+
+        File tmp = new File(dir, "import_" + System.currentTimeMillis() + ".tmp");
+        MessageDigest md = sha1();
+        try (InputStream in = openStream(resolver, uri);
+             ReadableByteChannel src = Channels.newChannel(in);
+             FileChannel dst = new FileOutputStream(tmp).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long copied = 0;
+            while (src.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer.duplicate());
+                while (buffer.hasRemaining()) copied += dst.write(buffer);
+                buffer.clear();
+                if (progress != null) progress.onProgress(copied, size);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        File copy = new File(dir, hex(md.digest()) + ".pdf");
+        if (copy.exists()) tmp.delete();
+        else if (!tmp.renameTo(copy)) {
+            tmp.delete();
+            throw new IOException("无法保存副本");
+        }
+        copy.setLastModified(System.currentTimeMillis());
+        index.edit().putString(headKey, copy.getAbsolutePath()).apply();
+        prune(copy);
+        return copy;
+    }
+
+    private static InputStream openStream(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new FileNotFoundException(uri.toString());
+        return in;
+    }
+
+    private static String headDigest(ContentResolver resolver, Uri uri) throws IOException {
+        MessageDigest md = sha1();
+        byte[] buf = new byte[8192];
+        try (InputStream in = openStream(resolver, uri)) {
+            int total = 0, n;
+            while (total < HEAD_BYTES && (n = in.read(buf, 0, Math.min(buf.length, HEAD_BYTES - total))) != -1) {
+                md.update(buf, 0, n);
+                total += n;
+            }
+        }
+        return hex(md.digest());
+    }
+
+    // 只保留最近用过的几份副本
+    private void prune(File keep) {
+        File[] files = dir.listFiles((d, n) -> n.endsWith(".pdf"));
+        if (files == null || files.length <= MAX_COPIES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_COPIES; i < files.length; i++) {
+            if (!files[i].equals(keep)) files[i].delete();
+        }
+    }
+
+    static MessageDigest sha1() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** 摘要转小写十六进制；缓存文件名、指纹都用它 */
+    static String hex(byte[] hash) {
+        char[] out = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            out[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(out);
+    }
+}